@@ -0,0 +1,106 @@
+package com.github.mlposey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the providers take to build requests and decode
+ * recorded responses, without any network traffic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private final Text text = new Text("The quick brown fox jumps over the lazy dog.");
+    private final List<Text> batch = new ArrayList<>();
+
+    private Translator googleTranslate;
+    private Translator googleBatch;
+    private Translator googleDetect;
+    private Translator googleLanguages;
+    private Translator yandexTranslate;
+    private Translator yandexDetect;
+    private Translator yandexLangs;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < 32; i++) {
+            batch.add(new Text("Sentence number " + i +
+                    ": the quick brown fox jumps over the lazy dog."));
+        }
+
+        googleTranslate = google("google-translate.json");
+        googleBatch = google("google-translate-batch.json");
+        googleDetect = google("google-detect.json");
+        googleLanguages = google("google-languages.json");
+        yandexTranslate = yandex("yandex-translate.json");
+        yandexDetect = yandex("yandex-detect.json");
+        yandexLangs = yandex("yandex-getLangs.json");
+    }
+
+    private Translator google(String payload) {
+        return new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                Payloads.recorded(Payloads.load(payload)));
+    }
+
+    private Translator yandex(String payload) {
+        return new YandexTranslator(Key.YANDEX, "http://localhost/",
+                Payloads.recorded(Payloads.load(payload)));
+    }
+
+    @Benchmark
+    public String encodeRequest() {
+        return HttpClientTransport.encode(
+                "key", Key.GOOGLE, "q", text, "target", Language.ES);
+    }
+
+    @Benchmark
+    public Text[] googleTranslate() {
+        return googleTranslate.translateImpl(text, Language.ES).join();
+    }
+
+    @Benchmark
+    public Text[][] googleTranslateBatch() {
+        return googleBatch.translateBatchImpl(batch, Language.ES).join();
+    }
+
+    @Benchmark
+    public Language[] googleDetect() {
+        return googleDetect.identifyImpl(text.toString()).join();
+    }
+
+    @Benchmark
+    public SupportMatrix googleLanguages() {
+        return googleLanguages.loadSupportImpl().join();
+    }
+
+    @Benchmark
+    public Text[] yandexTranslate() {
+        return yandexTranslate.translateImpl(text, Language.ES).join();
+    }
+
+    @Benchmark
+    public Language[] yandexDetect() {
+        return yandexDetect.identifyImpl(text.toString()).join();
+    }
+
+    @Benchmark
+    public SupportMatrix yandexLangs() {
+        return yandexLangs.loadSupportImpl().join();
+    }
+}
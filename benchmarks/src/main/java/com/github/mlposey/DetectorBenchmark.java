@@ -0,0 +1,39 @@
+package com.github.mlposey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures local language detection of a short message and a paragraph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectorBenchmark {
+    @Param({"Thanks, see you tomorrow at the office.",
+            "Translation Kit sends requests to Google Translate and Yandex.Translate " +
+            "without blocking a thread while they are in flight. It can limit the rate " +
+            "of requests, retry the ones that fail, and route them to the fastest " +
+            "service, and it measures every call so that you can see where the time goes."})
+    public String text;
+
+    private final LanguageDetector detector = new LanguageDetector();
+
+    @Benchmark
+    public Language detect() {
+        return detector.detect(text);
+    }
+}
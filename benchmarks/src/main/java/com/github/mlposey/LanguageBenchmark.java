@@ -0,0 +1,53 @@
+package com.github.mlposey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions between Language values and service codes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageBenchmark {
+    @Param({"en", "zh-TW"})
+    public String code;
+
+    private Language from;
+    private final Language to = Language.ES;
+
+    @Setup
+    public void setup() {
+        from = Language.fromCode(code);
+    }
+
+    /** The lookup the providers use for codes in responses */
+    @Benchmark
+    public Language fromCode() {
+        return Language.fromCode(code);
+    }
+
+    @Benchmark
+    public String toCode() {
+        return from.toString();
+    }
+
+    @Benchmark
+    public String concat() {
+        return from.concat(to);
+    }
+}
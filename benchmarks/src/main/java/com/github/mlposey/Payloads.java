@@ -0,0 +1,30 @@
+package com.github.mlposey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responses recorded from the Google and Yandex services.
+ */
+final class Payloads {
+    private Payloads() {}
+
+    /** Returns the recorded payload in the resource payloads/'name'. */
+    static byte[] load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns a Transport that answers every request with 'payload'. */
+    static Transport recorded(byte[] payload) {
+        CompletableFuture<Transport.Response> response = CompletableFuture.completedFuture(
+                new Transport.Response(200, payload, Collections.emptyMap()));
+        return (url, params) -> response;
+    }
+}
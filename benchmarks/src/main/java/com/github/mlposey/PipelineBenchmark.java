@@ -0,0 +1,147 @@
+package com.github.mlposey;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures translate and identify calls from start to consumer against a
+ * loopback HTTP server that answers with recorded payloads.</p>
+ *
+ * Each benchmark thread waits for its call to finish, so the number of
+ * threads is the number of calls in flight. Request coalescing is turned off,
+ * since every thread sends the same text and would otherwise share requests.
+ * {@link PipelineBenchmark#main(String[])} runs the benchmarks at several
+ * thread counts with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    private final Text text = new Text("The quick brown fox jumps over the lazy dog.");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Translator google;
+    private Translator yandex;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] googleTranslate = Payloads.load("google-translate.json");
+        byte[] googleDetect = Payloads.load("google-detect.json");
+        byte[] googleLanguages = Payloads.load("google-languages.json");
+        byte[] yandexTranslate = Payloads.load("yandex-translate.json");
+        byte[] yandexDetect = Payloads.load("yandex-detect.json");
+        byte[] yandexLanguages = Payloads.load("yandex-getLangs.json");
+
+        // The server writes headers and body separately, so without this
+        // Nagle's algorithm delays each response until the client's ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        // The translators request the supported directions once, in the
+        // background of their first translation.
+        server.createContext("/google", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            respond(exchange, path.endsWith("/detect") ? googleDetect :
+                    path.endsWith("/languages") ? googleLanguages : googleTranslate);
+        });
+        server.createContext("/yandex", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            respond(exchange, path.endsWith("/detect") ? yandexDetect :
+                    path.endsWith("/getLangs") ? yandexLanguages : yandexTranslate);
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        google = new GoogleTranslator(Key.GOOGLE, host + "/google");
+        yandex = new YandexTranslator(Key.YANDEX, host + "/yandex/");
+        google.setRequestCoalescing(false);
+        yandex.setRequestCoalescing(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        google.shutdown(10);
+        yandex.shutdown(10);
+        server.stop(0);
+        serverThreads.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] payload) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, payload.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(payload);
+        }
+    }
+
+    @Benchmark
+    public Text[] googleTranslate() {
+        CompletableFuture<Text[]> result = new CompletableFuture<>();
+        google.translate(text, Language.ES, result::complete, result::completeExceptionally);
+        return result.join();
+    }
+
+    @Benchmark
+    public Language[] googleIdentify() {
+        CompletableFuture<Language[]> result = new CompletableFuture<>();
+        google.identify(text.toString(), result::complete, result::completeExceptionally);
+        return result.join();
+    }
+
+    @Benchmark
+    public Text[] yandexTranslate() {
+        CompletableFuture<Text[]> result = new CompletableFuture<>();
+        yandex.translate(text, Language.ES, result::complete, result::completeExceptionally);
+        return result.join();
+    }
+
+    @Benchmark
+    public Language[] yandexIdentify() {
+        CompletableFuture<Language[]> result = new CompletableFuture<>();
+        yandex.identify(text.toString(), result::complete, result::completeExceptionally);
+        return result.join();
+    }
+
+    /** Runs the benchmarks with 1, 16, and 64 calls in flight. */
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 16, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(PipelineBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
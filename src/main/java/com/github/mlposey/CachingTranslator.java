@@ -0,0 +1,383 @@
+package com.github.mlposey;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A {@link Translator} that remembers the results of another Translator.</p>
+ *
+ * <p>Translations, identifications, and support queries are answered from
+ * memory when the same request was made recently. Results are keyed by the
+ * service's {@link Key}, the source and target languages, and the text after
+ * Unicode normalization. Errors are never cached.</p>
+ *
+ * <p>The cache holds at most a fixed number of entries and a fixed total
+ * weight, where the weight of an entry is the number of characters in its
+ * text and results. Entries also expire after a fixed amount of time.</p>
+ *
+ * <p>New results enter a small window of recent entries, which is kept in
+ * least recently used order. A result that leaves the window only replaces
+ * the least recently used of the main entries if its text was requested more
+ * often, as estimated by a {@link FrequencySketch}. This keeps texts that
+ * are asked for once, such as those of a long document, from evicting the
+ * ones that are asked for all the time.</p>
+ *
+ * <p>Large caches are split into independently locked segments by key, each
+ * with an equal share of the bounds, so that threads rarely wait on each
+ * other.</p>
+ */
+public class CachingTranslator extends Translator {
+    // The fewest entries a segment is given before a cache is split
+    private static final int minSegmentEntries = 256;
+    private static final int maxSegments = 16;
+    // The share of a segment's entries that is kept in its window
+    private static final double windowShare = 0.01;
+
+    private final Translator translator;
+
+    private final long ttl;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a CachingTranslator object that shares the executor and
+     * Transport of 'translator'.
+     *
+     * @param translator the Translator whose results should be cached
+     * @param maxEntries the maximum number of results to keep
+     * @param maxWeight the maximum number of characters to keep across all results
+     * @param ttl the time in seconds that a result is kept
+     */
+    public CachingTranslator(final Translator translator, int maxEntries,
+                             long maxWeight, long ttl) {
+        super(translator.getApiKey(), translator.getHost(), translator.getTransport(),
+                translator.getExecutor());
+        this.translator = translator;
+        this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+
+        int count = 1;
+        while (count < maxSegments && maxEntries / (count * 2) >= minSegmentEntries) {
+            count *= 2;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxEntries / count, maxWeight / count);
+        }
+    }
+
+    @Override
+    protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+        CacheKey key = translationKey(from, to);
+        Text[] cached = (Text[]) get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.clone());
+        }
+        return translator.translateImpl(from, to).thenApply(translations -> {
+            put(key, translations, weigh(translations));
+            return translations.clone();
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+        Text[][] translations = new Text[from.size()][];
+
+        // Only the texts that are not cached are sent to the service.
+        List<Integer> missing = new ArrayList<>();
+        List<Text> texts = new ArrayList<>();
+        for (int i = 0; i < from.size(); i++) {
+            Text[] cached = (Text[]) get(translationKey(from.get(i), to));
+            if (cached != null) {
+                translations[i] = cached.clone();
+            } else {
+                missing.add(i);
+                texts.add(from.get(i));
+            }
+        }
+
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(translations);
+        }
+        return translator.translateBatchImpl(texts, to).thenApply(results -> {
+            for (int i = 0; i < results.length; i++) {
+                put(translationKey(texts.get(i), to), results[i], weigh(results[i]));
+                translations[missing.get(i)] = results[i].clone();
+            }
+            return translations;
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+        CacheKey key = identificationKey(mysteryText);
+        Language[] cached = (Language[]) get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.clone());
+        }
+        return translator.identifyImpl(mysteryText).thenApply(languages -> {
+            put(key, languages, 0);
+            return languages.clone();
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+        Language[][] languages = new Language[mysteryTexts.size()][];
+
+        List<Integer> missing = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < mysteryTexts.size(); i++) {
+            Language[] cached = (Language[]) get(identificationKey(mysteryTexts.get(i)));
+            if (cached != null) {
+                languages[i] = cached.clone();
+            } else {
+                missing.add(i);
+                texts.add(mysteryTexts.get(i));
+            }
+        }
+
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(languages);
+        }
+        return translator.identifyBatchImpl(texts).thenApply(results -> {
+            for (int i = 0; i < results.length; i++) {
+                put(identificationKey(texts.get(i)), results[i], 0);
+                languages[missing.get(i)] = results[i].clone();
+            }
+            return languages;
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Boolean> hasSupportImpl(Language from, Language to) {
+        CacheKey key = new CacheKey('s', getApiKey(), from, to, null);
+        Boolean cached = (Boolean) get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return translator.hasSupportImpl(from, to).thenApply(isSupported -> {
+            put(key, isSupported, 0);
+            return isSupported;
+        });
+    }
+
+    @Override
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        return translator.getSupport();
+    }
+
+    @Override
+    public int getMaxRequestChars() { return translator.getMaxRequestChars(); }
+
+    /** Returns the number of requests that were answered from the cache. */
+    public long getHitCount() { return hits.sum(); }
+
+    /** Returns the number of requests that had to be sent to the service. */
+    public long getMissCount() { return misses.sum(); }
+
+    /** Returns the number of results currently in the cache. */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) { size += segment.size(); }
+        return size;
+    }
+
+    /** Removes all results from the cache. */
+    public void clear() {
+        for (Segment segment : segments) { segment.clear(); }
+    }
+
+    private CacheKey translationKey(Text from, Language to) {
+        return new CacheKey('t', getApiKey(), from.getLanguage(), to,
+                normalize(from.toString()));
+    }
+
+    private CacheKey identificationKey(String mysteryText) {
+        return new CacheKey('i', getApiKey(), null, null, normalize(mysteryText));
+    }
+
+    private static String normalize(String content) {
+        return Normalizer.normalize(content, Normalizer.Form.NFC);
+    }
+
+    private static long weigh(Text[] texts) {
+        long weight = 0;
+        for (Text text : texts) {
+            weight += text.toString().length();
+        }
+        return weight;
+    }
+
+    /** Returns the cached result for key, or null if there is none. */
+    private Object get(CacheKey key) {
+        Object value = segmentFor(key).get(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    private void put(CacheKey key, Object value, long resultWeight) {
+        long entryWeight = resultWeight + (key.content != null ? key.content.length() : 0);
+        segmentFor(key).put(key, new Entry(value, entryWeight, System.nanoTime() + ttl));
+    }
+
+    private Segment segmentFor(CacheKey key) {
+        return segments[FrequencySketch.spread(key.hashCode()) >>> 16 & (segments.length - 1)];
+    }
+
+    /** A part of the cache with its own lock and bounds. */
+    private static class Segment {
+        final int maxEntries;
+        final long maxWeight;
+        final int maxWindow;
+
+        // Both maps are kept in least recently used order.
+        final LinkedHashMap<CacheKey, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<CacheKey, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+        final FrequencySketch sketch;
+        long weight;
+
+        Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+            maxWindow = Math.max(1, (int) (maxEntries * windowShare));
+            sketch = new FrequencySketch(maxEntries);
+        }
+
+        synchronized Object get(CacheKey key) {
+            sketch.increment(key);
+            Entry entry = window.get(key);
+            if (entry == null) { entry = main.get(key); }
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                entry = null;
+            }
+            return entry != null ? entry.value : null;
+        }
+
+        synchronized void put(CacheKey key, Entry entry) {
+            if (entry.weight > maxWeight || maxEntries == 0) { return; }
+
+            remove(key);
+            window.put(key, entry);
+            weight += entry.weight;
+
+            // The entries that leave the window compete for a place in main.
+            Iterator<Map.Entry<CacheKey, Entry>> leaving = window.entrySet().iterator();
+            while (window.size() > maxWindow) {
+                Map.Entry<CacheKey, Entry> candidate = leaving.next();
+                leaving.remove();
+                if (!admit(candidate.getKey(), candidate.getValue())) {
+                    weight -= candidate.getValue().weight;
+                }
+            }
+
+            // The window alone can still be too heavy.
+            while (weight > maxWeight) {
+                Iterator<Map.Entry<CacheKey, Entry>> eldest =
+                        (main.isEmpty() ? window : main).entrySet().iterator();
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+            }
+        }
+
+        /**
+         * Moves an entry from the window to main if there is room or it is
+         * requested more often than the entry it would evict first.
+         */
+        private boolean admit(CacheKey key, Entry entry) {
+            Iterator<Map.Entry<CacheKey, Entry>> victims = main.entrySet().iterator();
+            boolean isCompared = false;
+            while (window.size() + main.size() + 1 > maxEntries || weight > maxWeight) {
+                if (!victims.hasNext()) { return false; }
+                Map.Entry<CacheKey, Entry> victim = victims.next();
+                if (!isCompared) {
+                    if (sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                        return false;
+                    }
+                    isCompared = true;
+                }
+                weight -= victim.getValue().weight;
+                victims.remove();
+            }
+            main.put(key, entry);
+            return true;
+        }
+
+        private void remove(CacheKey key) {
+            Entry entry = window.remove(key);
+            if (entry == null) { entry = main.remove(key); }
+            if (entry != null) { weight -= entry.weight; }
+        }
+
+        synchronized int size() { return window.size() + main.size(); }
+
+        synchronized void clear() {
+            window.clear();
+            main.clear();
+            weight = 0;
+        }
+    }
+
+    /** A cached result and the information needed to evict it. */
+    private static class Entry {
+        final Object value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(Object value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Identifies a request to the service. */
+    private static class CacheKey {
+        final char operation;
+        final Key service;
+        final Language from;
+        final Language to;
+        final String content;
+
+        CacheKey(char operation, Key service, Language from, Language to,
+                 String content) {
+            this.operation = operation;
+            this.service = service;
+            this.from = from;
+            this.to = to;
+            this.content = content;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) { return false; }
+            CacheKey other = (CacheKey) o;
+            return operation == other.operation && service == other.service &&
+                    from == other.from && to == other.to &&
+                    Objects.equals(content, other.content);
+        }
+
+        @Override
+        public int hashCode() {
+            // Enum hash codes change from run to run, but their ordinals do not.
+            return Objects.hash(operation, ordinal(service), ordinal(from), ordinal(to),
+                    content);
+        }
+
+        private static int ordinal(Enum<?> value) { return value == null ? -1 : value.ordinal(); }
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.mlposey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The priority, deadline and cancellation of a call, shared by the requests
+ * that the call sends.
+ */
+final class CallContext {
+    /** The context of requests that are not part of a call. It is never cancelled. */
+    static final CallContext none = new CallContext(Priority.STANDARD, -1);
+
+    final Priority priority;
+    final boolean hasDeadline;
+    // A time from System.nanoTime(), if the call has a deadline
+    final long deadline;
+
+    // Run when the call is cancelled, or null once it has been
+    private List<Runnable> cancelHooks = new ArrayList<>();
+    // The code of the TranslationError that ended the call, or 0
+    private int code;
+
+    /**
+     * Constructs a CallContext object.
+     *
+     * @param priority the priority of the call's requests
+     * @param timeoutMillis the most milliseconds the call may take, or -1 for no limit
+     */
+    CallContext(Priority priority, long timeoutMillis) {
+        this(priority, timeoutMillis >= 0,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis)));
+    }
+
+    private CallContext(Priority priority, boolean hasDeadline, long deadline) {
+        this.priority = priority;
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /** Returns a context with the same priority and deadline that is cancelled separately. */
+    CallContext copy() { return new CallContext(priority, hasDeadline, deadline); }
+
+    /** Returns true if this context's deadline is no earlier than that of 'other'. */
+    boolean outlasts(CallContext other) {
+        return !hasDeadline || (other.hasDeadline && deadline - other.deadline >= 0);
+    }
+
+    /** Returns true if the deadline has passed. */
+    boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /** Returns the milliseconds left until the deadline, 0 if it passed, or -1 if there is none. */
+    long remainingMillis() {
+        if (!hasDeadline) { return -1; }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /** Runs 'hook' when the call is cancelled, or now if it already was. */
+    void onCancel(Runnable hook) {
+        if (this == none) { return; }
+        synchronized (this) {
+            if (cancelHooks != null) {
+                cancelHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /**
+     * Cancels the call, so that what it waits on fails with a TranslationError
+     * of 'code'. Only the first cancellation has an effect.
+     */
+    void cancel(int code) {
+        List<Runnable> hooks;
+        synchronized (this) {
+            if (cancelHooks == null || this == none) { return; }
+            this.code = code;
+            hooks = cancelHooks;
+            cancelHooks = null;
+        }
+        for (Runnable hook : hooks) { hook.run(); }
+    }
+
+    /** Returns true if the call was cancelled. */
+    synchronized boolean isCancelled() { return cancelHooks == null; }
+
+    /** Returns the code the call was cancelled with, or 0 if it was not. */
+    synchronized int getCode() { return code; }
+}
@@ -0,0 +1,251 @@
+package com.github.mlposey;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Stops a {@link Translator} from sending requests to a service that is failing.</p>
+ *
+ * A CircuitBreaker watches the outcomes of the most recent calls of one
+ * {@link Operation}. It has three states: <br>
+ * - CLOSED: calls are sent. If too many recent calls failed or were slow, the
+ *   breaker opens. <br>
+ * - OPEN: calls fail immediately with {@link TranslationError#CIRCUIT_OPEN}.
+ *   After the open duration, the breaker becomes half-open. <br>
+ * - HALF_OPEN: a few probe calls are sent. If they all succeed quickly, the
+ *   breaker closes; any other outcome, including an error that would not
+ *   count against the service while closed, opens it again. Calls that were
+ *   sent before the breaker half-opened do not count. A probe that has not
+ *   finished once the slow-call time has passed counts as failed, so a probe
+ *   that hangs cannot keep the breaker half-open. <br><br>
+ *
+ * A call is slow if its longest request to the service took longer than
+ * the slow-call time. Time spent waiting to be sent, such as in a
+ * {@link RateLimiter} or between retries, does not count.
+ *
+ * Listeners are told about every change of state, which can be used to raise
+ * alerts.
+ *
+ * @see Translator#setCircuitBreaker(Operation, CircuitBreaker)
+ */
+public class CircuitBreaker {
+    /** The states of a CircuitBreaker */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** The permit of a call that may not be sent */
+    static final long denied = -1;
+
+    /** Receives the state changes of a CircuitBreaker. */
+    public interface Listener {
+        /**
+         * Called after 'breaker' changes state. It should return quickly,
+         * because it is called by the thread that completed a request.
+         */
+        void onStateChange(CircuitBreaker breaker, State from, State to);
+    }
+
+    private final int minCalls;
+    private final double failureThreshold;
+    private final long slowCall;
+    private final double slowThreshold;
+    private final long openDuration;
+    private final int probes;
+
+    // The outcomes of the most recent calls, oldest first from 'next'
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    // Counts the changes of state, so that calls can be told apart from
+    // those sent in an earlier state
+    private long generation;
+    private long openedAt;
+    private int probesSent;
+    private int probesPassed;
+    private long lastProbeAt;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a CircuitBreaker object that watches the last 20 calls, opens
+     * when half of them fail or all of them take longer than 10 seconds, stays
+     * open for 30 seconds, and sends 3 probe calls while half-open.
+     */
+    public CircuitBreaker() {
+        this(20, 10, 0.5, 10000, 1.0, 30000, 3);
+    }
+
+    /**
+     * Constructs a CircuitBreaker object.
+     *
+     * @param window the number of recent calls that are watched
+     * @param minCalls the fewest calls that must be watched before the breaker opens
+     * @param failureThreshold the fraction of failed calls that opens the breaker
+     * @param slowCall the time in milliseconds after which a call is slow
+     * @param slowThreshold the fraction of slow calls that opens the breaker
+     * @param openDuration the time in milliseconds that the breaker stays open
+     * @param probes the number of calls sent while the breaker is half-open
+     */
+    public CircuitBreaker(int window, int minCalls, double failureThreshold,
+                          long slowCall, double slowThreshold, long openDuration,
+                          int probes) {
+        this.minCalls = minCalls;
+        this.failureThreshold = failureThreshold;
+        this.slowCall = TimeUnit.MILLISECONDS.toNanos(slowCall);
+        this.slowThreshold = slowThreshold;
+        this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.probes = probes;
+        failed = new boolean[window];
+        slow = new boolean[window];
+    }
+
+    /** Adds a listener that is told about every change of state. */
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    /** Returns the current state. */
+    public synchronized State getState() { return state; }
+
+    /**
+     * Returns true if a request that failed with 'code' counts against the
+     * service.
+     *
+     * <p>By default, network errors, rate limits (429), and server errors
+     * (500, 502, 503, and 504) count. Errors caused by the request itself,
+     * such as unsupported directions, do not.</p>
+     */
+    protected boolean isFailure(int code) {
+        switch (code) {
+            case TranslationError.NETWORK_ERROR:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the permit of a call that may be sent, or {@link CircuitBreaker#denied}.
+     * The permit must be passed to
+     * {@link CircuitBreaker#record(long, long, Throwable)}, which only counts
+     * calls that were sent in the current state; while half-open, those are
+     * the probes.
+     */
+    long tryAcquire() {
+        boolean isAllowed;
+        long permit;
+        boolean isHalfOpened = false;
+        boolean isReopened = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (state == State.HALF_OPEN && probesSent == probes &&
+                    now - lastProbeAt >= slowCall) {
+                // Every probe still running was sent before the last one,
+                // so all of them are slow.
+                changeState(State.OPEN);
+                isReopened = true;
+            } else if (state == State.OPEN && now - openedAt >= openDuration) {
+                changeState(State.HALF_OPEN);
+                isHalfOpened = true;
+            }
+            isAllowed = state == State.CLOSED ||
+                    (state == State.HALF_OPEN && probesSent < probes);
+            if (isAllowed && state == State.HALF_OPEN) {
+                probesSent++;
+                lastProbeAt = now;
+            }
+            permit = isAllowed ? generation : denied;
+        }
+        if (isReopened) { notifyListeners(State.HALF_OPEN, State.OPEN); }
+        if (isHalfOpened) { notifyListeners(State.OPEN, State.HALF_OPEN); }
+        return permit;
+    }
+
+    /**
+     * Records the outcome of a call.
+     *
+     * @param permit the permit that {@link CircuitBreaker#tryAcquire()} gave the call
+     * @param nanos the time the longest request of the call took
+     * @param error the error the call failed with, or null if it succeeded
+     */
+    void record(long permit, long nanos, Throwable error) {
+        boolean isFailure = error != null && (!(error instanceof TranslationError) ||
+                isFailure(((TranslationError) error).getCode()));
+        boolean isSlow = nanos >= slowCall;
+
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            // Calls sent in an earlier state, such as a closed call that
+            // finishes while the breaker is half-open, are ignored.
+            if (permit != generation) { return; }
+            switch (state) {
+                case CLOSED:
+                    add(isFailure, isSlow);
+                    if (calls >= minCalls && (failures >= failureThreshold * calls ||
+                            slowCalls >= slowThreshold * calls)) {
+                        changeState(State.OPEN);
+                    }
+                    break;
+                case HALF_OPEN:
+                    // A probe that was throttled or aborted did not show that
+                    // the service recovered.
+                    if (error != null || isSlow) {
+                        changeState(State.OPEN);
+                    } else if (++probesPassed == probes) {
+                        changeState(State.CLOSED);
+                    }
+                    break;
+                case OPEN:
+                    // No calls are sent while the breaker is open.
+                    break;
+            }
+            to = state;
+        }
+        if (from != to) { notifyListeners(from, to); }
+    }
+
+    /** Adds an outcome to the window, replacing the oldest one if it is full. */
+    private void add(boolean isFailure, boolean isSlow) {
+        if (calls == failed.length) {
+            if (failed[next]) { failures--; }
+            if (slow[next]) { slowCalls--; }
+        } else {
+            calls++;
+        }
+        failed[next] = isFailure;
+        slow[next] = isSlow;
+        if (isFailure) { failures++; }
+        if (isSlow) { slowCalls++; }
+        next = (next + 1) % failed.length;
+    }
+
+    private void changeState(State to) {
+        state = to;
+        generation++;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            probesSent = 0;
+            probesPassed = 0;
+        } else {
+            // A closed breaker starts watching calls from scratch.
+            next = calls = failures = slowCalls = 0;
+        }
+    }
+
+    private void notifyListeners(State from, State to) {
+        for (Listener listener : listeners) {
+            listener.onStateChange(this, from, to);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.mlposey;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>Translates documents of any length from a Reader to a Writer.</p>
+ *
+ * A document is split into paragraphs (or sentences, if a paragraph is too
+ * long) and the pieces are packed into batch requests that stay under the
+ * {@link Translator#getMaxRequestChars()} limit of the service. Several
+ * requests are sent at once, and their translations are written in the
+ * original order with the original whitespace between them.
+ *
+ * <p>Only the requests in flight are held in memory, so documents larger than
+ * memory can be translated.</p>
+ *
+ * <pre>
+ * DocumentTranslator documents = new DocumentTranslator(Translators.get(Key.GOOGLE));
+ * try (Reader in = Files.newBufferedReader(manual);
+ *      Writer out = Files.newBufferedWriter(translatedManual)) {
+ *     documents.translate(in, out, Language.DE);
+ * }
+ * </pre>
+ */
+public class DocumentTranslator {
+    private final Translator translator;
+    private final int maxRequestChars;
+    private final int maxInFlight;
+
+    /**
+     * Constructs a DocumentTranslator object that sends up to four requests at
+     * once, each within the limit of the translator's service.
+     *
+     * @param translator the Translator that translates each request
+     */
+    public DocumentTranslator(final Translator translator) {
+        this(translator, translator.getMaxRequestChars(), 4);
+    }
+
+    /**
+     * Constructs a DocumentTranslator object.
+     *
+     * @param translator the Translator that translates each request
+     * @param maxRequestChars the most characters of text in one request
+     * @param maxInFlight the most requests that are sent at once
+     * @throws IllegalArgumentException if 'maxInFlight' is less than one
+     */
+    public DocumentTranslator(final Translator translator, int maxRequestChars,
+                              int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.translator = translator;
+        this.maxRequestChars = maxRequestChars;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Translates a document, letting the service identify its language.
+     *
+     * @see DocumentTranslator#translate(Reader, Writer, Language, Language)
+     */
+    public void translate(Reader in, Writer out, final Language to)
+            throws IOException, InterruptedException {
+        translate(in, out, null, to);
+    }
+
+    /**
+     * Translates a document.
+     *
+     * <p>The calling thread reads the document and writes the translation,
+     * while the requests are sent by the Translator. The Writer is flushed but
+     * neither stream is closed.</p>
+     *
+     * @param in the untranslated document
+     * @param out receives the translated document
+     * @param from the language of the document, or null to let the service identify it
+     * @param to the language into which the document should be translated
+     * @throws IOException if the document could not be read or written
+     * @throws InterruptedException if the thread was interrupted while it waited on a request
+     * @throws TranslationError if a request failed. The translation of the
+     *                          pieces before it has been written, and the
+     *                          requests after it are cancelled.
+     */
+    public void translate(Reader in, Writer out, final Language from, final Language to)
+            throws IOException, InterruptedException {
+        Segmenter segmenter = new Segmenter(in, maxRequestChars);
+        ArrayDeque<Batch> running = new ArrayDeque<>();
+
+        try {
+            Batch batch = new Batch();
+            Segmenter.Segment segment;
+            while ((segment = segmenter.next()) != null) {
+                if (batch.chars + segment.text.length() > maxRequestChars) {
+                    running.add(batch.send(from, to));
+                    batch = new Batch();
+                    // Writing the oldest batch makes room for the next one.
+                    if (running.size() == maxInFlight) { running.poll().write(out); }
+                }
+                batch.add(segment);
+            }
+            running.add(batch.send(from, to));
+            while (!running.isEmpty()) {
+                running.poll().write(out);
+            }
+        } finally {
+            // The translations after a failure would never be written.
+            for (Batch unwritten : running) { unwritten.result.cancel(true); }
+        }
+        out.flush();
+    }
+
+    /** Segments that are translated with one request. */
+    private class Batch {
+        final List<Segmenter.Segment> segments = new ArrayList<>();
+        int chars;
+        CompletableFuture<Text[][]> result;
+
+        void add(Segmenter.Segment segment) {
+            segments.add(segment);
+            chars += segment.text.length();
+        }
+
+        Batch send(final Language from, final Language to) {
+            List<Text> texts = new ArrayList<>();
+            for (Segmenter.Segment segment : segments) {
+                // Whitespace at the start of the document has no text.
+                if (!segment.text.isEmpty()) { texts.add(new Text(segment.text, from)); }
+            }
+
+            result = texts.isEmpty() ? CompletableFuture.completedFuture(new Text[0][]) :
+                    translator.translateBatchAsync(texts, to);
+            return this;
+        }
+
+        /** Waits for the translations and writes them with their separators. */
+        void write(Writer out) throws IOException, InterruptedException {
+            Text[][] translations;
+            try {
+                translations = result.get();
+            } catch (ExecutionException e) {
+                throw Translator.toTranslationError(e.getCause());
+            }
+
+            int next = 0;
+            for (Segmenter.Segment segment : segments) {
+                if (!segment.text.isEmpty()) { out.write(translations[next++][0].toString()); }
+                out.write(segment.separator);
+            }
+        }
+    }
+}
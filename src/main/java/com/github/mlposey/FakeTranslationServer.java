@@ -0,0 +1,524 @@
+package com.github.mlposey;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>An in-process imitation of the Google Translate (v2) and Yandex.Translate
+ * (v1.5) services.</p>
+ *
+ * The server listens on the loopback interface and answers the methods that
+ * {@link GoogleTranslator} and {@link YandexTranslator} use. It can delay
+ * responses, inject errors, and reject requests over a rate limit, which makes
+ * it suitable for load tests and for reproducing slow or failing services
+ * without an API key. Like the services, it rejects translation requests
+ * with too much text, accepts gzip-compressed form bodies, compresses
+ * responses for clients that accept gzip, and honors Google's fields
+ * parameter.
+ *
+ * <pre>
+ * try (FakeTranslationServer server = new FakeTranslationServer()) {
+ *     server.setLatency(FakeTranslationServer.logNormal(50, 0.5));
+ *     Translator translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+ *     ...
+ * }
+ * </pre>
+ *
+ * Random choices, such as latencies and injected errors, come from a seeded
+ * generator so that runs can be repeated.
+ */
+public class FakeTranslationServer implements Closeable {
+    private static final String googlePath = "/language/translate/v2";
+    private static final String yandexPath = "/api/v1.5/tr.json/";
+    // The most characters of text in a translation request
+    private static final int googleMaxChars = 5000;
+    private static final int yandexMaxChars = 10000;
+
+    /** Chooses how long the server waits before it answers a request. */
+    public interface Latency {
+        /** Returns the next delay in milliseconds. */
+        long nextMillis(Random random);
+    }
+
+    /** Translates the texts that the server receives. */
+    public interface Translation {
+        /**
+         * Returns the translation of 'text'.
+         *
+         * @param from the code of the text's language, or null if it was not given
+         * @param to the code of the target language
+         */
+        String translate(String text, String from, String to);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService timer;
+    private final Random random;
+
+    private volatile Latency latency = fixed(0);
+    private volatile Translation translation = (text, from, to) -> "[" + to + "] " + text;
+    private volatile Function<String, String> detector = FakeTranslationServer::detect;
+    private volatile Set<String> languages = new LinkedHashSet<>(Arrays.asList(
+            "de", "en", "es", "fr", "it", "ja", "nl", "pt", "ru", "zh"));
+
+    private volatile double errorRate;
+    private volatile int errorCode = 503;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile double rateLimit;
+    private double rateTokens;
+    private long rateRefill = System.nanoTime();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    /**
+     * Constructs and starts a FakeTranslationServer object on a free port.
+     *
+     * @throws IOException if the server cannot listen on the loopback interface
+     */
+    public FakeTranslationServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Constructs and starts a FakeTranslationServer object on a free port.
+     *
+     * @param seed the seed of the generator used for latencies and errors
+     * @throws IOException if the server cannot listen on the loopback interface
+     */
+    public FakeTranslationServer(long seed) throws IOException {
+        random = new Random(seed);
+
+        handlers = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+                task -> daemon(task, "fake-translation-server"));
+        timer = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()),
+                task -> daemon(task, "fake-translation-server-timer"));
+
+        // The server writes headers and body separately, so without this
+        // Nagle's algorithm delays each response until the client's ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.createContext(googlePath, exchange -> handle(exchange, true));
+        server.createContext(yandexPath, exchange -> handle(exchange, false));
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** Returns the host URL to use in place of Google's. */
+    public String getGoogleHost() { return getAddress() + googlePath; }
+
+    /** Returns the host URL to use in place of Yandex's. */
+    public String getYandexHost() { return getAddress() + yandexPath; }
+
+    private String getAddress() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Returns a latency that is always 'millis'. */
+    public static Latency fixed(long millis) {
+        return random -> millis;
+    }
+
+    /** Returns a latency that is evenly distributed between 'min' and 'max' milliseconds. */
+    public static Latency uniform(long min, long max) {
+        return random -> min + (long) (random.nextDouble() * (max - min));
+    }
+
+    /**
+     * Returns a latency with a long tail, like that of real services.
+     *
+     * @param median the median latency in milliseconds
+     * @param sigma the spread of the latency; 1 makes about one request in a
+     *              hundred ten times slower than the median
+     */
+    public static Latency logNormal(double median, double sigma) {
+        return random -> (long) (median * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    /** Sets how long the server waits before it answers each request. */
+    public void setLatency(Latency latency) { this.latency = latency; }
+
+    /** Sets how texts are translated. By default, the target code is prepended. */
+    public void setTranslation(Translation translation) { this.translation = translation; }
+
+    /**
+     * Sets how the language of a text is identified.
+     *
+     * @param detector returns the code of a text's language, or null if it
+     *                 cannot be identified. By default, texts with letters are
+     *                 English and other texts cannot be identified.
+     */
+    public void setDetector(Function<String, String> detector) { this.detector = detector; }
+
+    /** Sets the codes of the supported languages. All pairs of them are supported directions. */
+    public void setLanguages(String... codes) {
+        languages = new LinkedHashSet<>(Arrays.asList(codes));
+    }
+
+    /**
+     * Makes a fraction of requests fail.
+     *
+     * @param rate the probability that a request fails
+     * @param code the HTTP status and service code of the failures
+     */
+    public void setErrorRate(double rate, int code) {
+        errorCode = code;
+        errorRate = rate;
+    }
+
+    /**
+     * Makes the next requests fail.
+     *
+     * @param count the number of requests that fail
+     * @param code the HTTP status and service code of the failures
+     */
+    public void failNext(int count, int code) {
+        errorCode = code;
+        failures.set(count);
+    }
+
+    /**
+     * Limits the number of requests per second that the server accepts.
+     * Google requests over the limit get 429 and Yandex requests get 404,
+     * the code Yandex uses for exceeded limits.
+     *
+     * @param requestsPerSecond the limit, or 0 for no limit
+     */
+    public synchronized void setRateLimit(double requestsPerSecond) {
+        rateLimit = requestsPerSecond;
+        rateTokens = requestsPerSecond;
+    }
+
+    /** Returns the number of requests received. */
+    public long getRequestCount() { return requests.get(); }
+
+    /** Returns the number of requests that failed because of injected errors. */
+    public long getErrorCount() { return errors.get(); }
+
+    /** Returns the number of requests rejected by the rate limit. */
+    public long getRateLimitedCount() { return rateLimited.get(); }
+
+    /** Sets all counters to zero. */
+    public void resetCounters() {
+        requests.set(0);
+        errors.set(0);
+        rateLimited.set(0);
+    }
+
+    /** Stops the server. */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, boolean isGoogle) throws IOException {
+        requests.incrementAndGet();
+        List<String[]> params = readParams(exchange);
+        String path = exchange.getRequestURI().getPath();
+
+        int status;
+        byte[] body;
+        if (isRateLimited()) {
+            rateLimited.incrementAndGet();
+            status = isGoogle ? 429 : 404;
+            body = error(isGoogle, status, "Rate limit exceeded");
+            exchange.getResponseHeaders().add("Retry-After", "1");
+        } else if (isFailing()) {
+            errors.incrementAndGet();
+            status = errorCode;
+            body = error(isGoogle, status, "Injected error");
+        } else {
+            try {
+                body = isGoogle ?
+                        google(path.substring(googlePath.length()), params) :
+                        yandex(path.substring(yandexPath.length()), params);
+                status = 200;
+            } catch (TranslationError e) {
+                status = e.getCode();
+                body = error(isGoogle, status, "Request failed");
+            }
+        }
+
+        long delay = latency.nextMillis(random);
+        if (delay <= 0) {
+            respond(exchange, status, body);
+        } else {
+            // Delayed responses are sent by the timer so that handler threads
+            // stay free for other requests.
+            int finalStatus = status;
+            byte[] finalBody = body;
+            timer.schedule(() -> {
+                try {
+                    respond(exchange, finalStatus, finalBody);
+                } catch (IOException e) {
+                    exchange.close();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private byte[] google(String method, List<String[]> params) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject().name("data").beginObject();
+
+        switch (method) {
+            case "":
+            case "/": {
+                String to = param(params, "target");
+                if (to == null || !languages.contains(to)) { throw new TranslationError(400); }
+                String from = param(params, "source");
+                if (countChars(values(params, "q")) > googleMaxChars) {
+                    throw new TranslationError(400);
+                }
+                json.name("translations").beginArray();
+                for (String text : values(params, "q")) {
+                    json.beginObject().name("translatedText")
+                            .value(translation.translate(text, from, to));
+                    if (from == null && isWanted(params, "detectedSourceLanguage")) {
+                        String detected = detector.apply(text);
+                        json.name("detectedSourceLanguage").value(detected != null ? detected : "und");
+                    }
+                    json.endObject();
+                }
+                json.endArray();
+                break;
+            }
+            case "/detect":
+                if (countChars(values(params, "q")) > googleMaxChars) {
+                    throw new TranslationError(400);
+                }
+                json.name("detections").beginArray();
+                for (String text : values(params, "q")) {
+                    String detected = detector.apply(text);
+                    json.beginArray().beginObject()
+                            .name("language").value(detected != null ? detected : "und");
+                    if (isWanted(params, "confidence")) {
+                        json.name("isReliable").value(false)
+                                .name("confidence").value(detected != null ? 0.9 : 1);
+                    }
+                    json.endObject().endArray();
+                }
+                json.endArray();
+                break;
+            case "/languages":
+                json.name("languages").beginArray();
+                for (String language : languages) {
+                    json.beginObject().name("language").value(language).endObject();
+                }
+                json.endArray();
+                break;
+            default:
+                throw new TranslationError(404);
+        }
+
+        json.endObject().endObject().close();
+        return out.toByteArray();
+    }
+
+    private byte[] yandex(String method, List<String[]> params) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject();
+
+        switch (method) {
+            case "translate": {
+                String lang = param(params, "lang");
+                if (lang == null) { throw new TranslationError(502); }
+                String[] codes = lang.split("-");
+                String from = codes.length > 1 ? codes[0] : null;
+                String to = codes[codes.length - 1];
+                if (!languages.contains(to) || (from != null && !languages.contains(from))) {
+                    throw new TranslationError(TranslationError.UNSUPPORTED_DIRECTION);
+                }
+                if (countChars(values(params, "text")) > yandexMaxChars) {
+                    throw new TranslationError(413);
+                }
+
+                json.name("code").value(200).name("lang").value(lang).name("text").beginArray();
+                for (String text : values(params, "text")) {
+                    json.value(translation.translate(text, from, to));
+                }
+                json.endArray();
+                break;
+            }
+            case "detect": {
+                String detected = detector.apply(param(params, "text"));
+                json.name("code").value(200).name("lang").value(detected != null ? detected : "");
+                break;
+            }
+            case "getLangs":
+                json.name("dirs").beginArray();
+                for (String from : languages) {
+                    for (String to : languages) {
+                        if (!from.equals(to)) { json.value(from + "-" + to); }
+                    }
+                }
+                json.endArray();
+                break;
+            default:
+                throw new TranslationError(404);
+        }
+
+        json.endObject().close();
+        return out.toByteArray();
+    }
+
+    private static int countChars(List<String> texts) {
+        int chars = 0;
+        for (String text : texts) {
+            chars += text.length();
+        }
+        return chars;
+    }
+
+    private static byte[] error(boolean isGoogle, int code, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject();
+        if (isGoogle) {
+            json.name("error").beginObject()
+                    .name("code").value(code)
+                    .name("message").value(message)
+                    .endObject();
+        } else {
+            json.name("code").value(code).name("message").value(message);
+        }
+        json.endObject().close();
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accepted != null && accepted.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private synchronized boolean isRateLimited() {
+        if (rateLimit <= 0) { return false; }
+
+        long now = System.nanoTime();
+        rateTokens = Math.min(rateLimit, rateTokens + (now - rateRefill) / 1e9 * rateLimit);
+        rateRefill = now;
+        if (rateTokens < 1) { return true; }
+        rateTokens--;
+        return false;
+    }
+
+    private boolean isFailing() {
+        if (failures.get() > 0 && failures.getAndDecrement() > 0) { return true; }
+        return errorRate > 0 && random.nextDouble() < errorRate;
+    }
+
+    /** Reads the parameters from the query string and any form body. */
+    private static List<String[]> readParams(HttpExchange exchange) throws IOException {
+        List<String[]> params = new ArrayList<>();
+        addParams(params, exchange.getRequestURI().getRawQuery());
+
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = gzip.readAllBytes();
+            }
+        }
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (body.length > 0 && type != null && type.startsWith("application/x-www-form-urlencoded")) {
+            addParams(params, new String(body, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void addParams(List<String[]> params, String encoded) {
+        if (encoded == null || encoded.isEmpty()) { return; }
+        for (String pair : encoded.split("&")) {
+            int split = pair.indexOf('=');
+            String name = split < 0 ? pair : pair.substring(0, split);
+            String value = split < 0 ? "" : pair.substring(split + 1);
+            params.add(new String[]{
+                    URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8)});
+        }
+    }
+
+    /** Returns the first value of a parameter, or null if it was not sent. */
+    private static String param(List<String[]> params, String name) {
+        for (String[] param : params) {
+            if (param[0].equals(name)) { return param[1]; }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if a Google response should include a field: either no
+     * fields were selected, or the selection names it.
+     */
+    private static boolean isWanted(List<String[]> params, String field) {
+        String fields = param(params, "fields");
+        return fields == null || fields.contains(field);
+    }
+
+    /** Returns every value of a repeated parameter, in order. */
+    private static List<String> values(List<String[]> params, String name) {
+        List<String> values = new ArrayList<>();
+        for (String[] param : params) {
+            if (param[0].equals(name)) { values.add(param[1]); }
+        }
+        return values;
+    }
+
+    /** Identifies texts with letters as English. */
+    private static String detect(String text) {
+        return text != null && text.chars().anyMatch(Character::isLetter) ? "en" : null;
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
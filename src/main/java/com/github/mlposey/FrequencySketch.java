@@ -0,0 +1,88 @@
+package com.github.mlposey;
+
+/**
+ * <p>Estimates how often keys have been seen recently.</p>
+ *
+ * The sketch is a count-min sketch of 4-bit counters: each key increments one
+ * counter in each of four rows, and its frequency is the smallest of them, so
+ * collisions can only make a key look more popular. Once the sketch has
+ * counted ten times as many keys as it is sized for, every counter is halved,
+ * which lets keys that used to be popular fade.
+ *
+ * <p>A sketch is not thread-safe.</p>
+ */
+final class FrequencySketch {
+    private static final long[] seeds = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    // Clears the bit that each counter gets from its neighbor when halved
+    private static final long resetMask = 0x7777777777777777L;
+    private static final int maxCount = 15;
+
+    // Sixteen counters per element, with at least one element per key
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Constructs a FrequencySketch object.
+     *
+     * @param expectedKeys the number of keys whose frequencies matter, such
+     *                     as the capacity of a cache
+     */
+    FrequencySketch(int expectedKeys) {
+        // A cache bounded only by weight may name a huge number of entries.
+        int keys = Math.max(16, Math.min(expectedKeys, 1 << 20));
+        table = new long[Integer.highestOneBit(keys - 1) << 1];
+        sampleSize = 10 * keys;
+    }
+
+    /** Returns the estimated number of times 'key' was seen, at most 15. */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = maxCount;
+        for (int row = 0; row < seeds.length; row++) {
+            long position = position(hash, row);
+            int index = (int) position & (table.length - 1);
+            int offset = (int) (position >>> 40) & 0x3c;
+            frequency = Math.min(frequency, (int) (table[index] >>> offset) & maxCount);
+        }
+        return frequency;
+    }
+
+    /** Counts a sighting of 'key'. */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean isAdded = false;
+        for (int row = 0; row < seeds.length; row++) {
+            long position = position(hash, row);
+            int index = (int) position & (table.length - 1);
+            int offset = (int) (position >>> 40) & 0x3c;
+            if (((table[index] >>> offset) & maxCount) != maxCount) {
+                table[index] += 1L << offset;
+                isAdded = true;
+            }
+        }
+        if (isAdded && ++additions == sampleSize) { reset(); }
+    }
+
+    /** Halves every counter. */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & resetMask;
+        }
+        additions /= 2;
+    }
+
+    /** Returns a hash that picks the element and counter of 'row'. */
+    private static long position(int hash, int row) {
+        long position = (hash + seeds[row]) * seeds[row];
+        return position + (position >>> 32);
+    }
+
+    /** Mixes the bits of a hash code, since many are poorly distributed. */
+    static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -1,12 +1,12 @@
 package com.github.mlposey;
 
-import com.github.kevinsawicki.http.HttpRequest;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>A {@link Translator} for the Google Translate service.</p>
@@ -15,7 +15,14 @@ import java.util.ArrayList;
  * Terms: https://cloud.google.com/translate/attribution
  */
 public class GoogleTranslator extends Translator {
-    private JsonParser parser;
+    // The most strings Google accepts in a single request
+    private final int maxSegments = 128;
+    // The largest request the API recommends
+    private final int maxRequestChars = 5000;
+    // Ask Google to send only the parts of each response that are read.
+    private static final String translateFields = "data/translations/translatedText";
+    private static final String detectFields = "data/detections/language";
+    private static final String languagesFields = "data/languages/language";
 
     /**
      * Constructs a GoogleTranslator object.
@@ -25,105 +32,242 @@ public class GoogleTranslator extends Translator {
      */
     public GoogleTranslator(final Key apiKey, String host) {
         super(apiKey, host);
-        parser = new JsonParser();
+    }
+
+    /**
+     * Constructs a GoogleTranslator object.
+     *
+     * @param apiKey the Google Translate API key
+     * @param host the host URL (e.g., https://translation.googleapis.com/language/translate/v2)
+     * @param transport sends requests to the service
+     */
+    public GoogleTranslator(final Key apiKey, String host, final Transport transport) {
+        super(apiKey, host, transport);
+    }
+
+    /**
+     * Constructs a GoogleTranslator object.
+     *
+     * @param apiKey the Google Translate API key
+     * @param host the host URL (e.g., https://translation.googleapis.com/language/translate/v2)
+     * @param transport sends requests to the service
+     * @param executor runs consumers and error handlers
+     */
+    public GoogleTranslator(final Key apiKey, String host, final Transport transport,
+                            final ExecutorService executor) {
+        super(apiKey, host, transport, executor);
     }
 
     @Override
-    protected Text[] translateImpl(Text from, Language to) throws TranslationError {
-        HttpRequest request = getRequest(
-                "","key", getApiKey(),
+    protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+        if (isTooLong(from)) {
+            return translatePieces(from, to, piece -> translateImpl(piece, to));
+        }
+
+        return post(
+                "", "key", getApiKey(),
                 "q", from.toString(),
-                "target", to.toString()
-        );
+                "target", to.toString(),
+                "fields", translateFields
+        ).thenApply(response -> {
+            ArrayList<Text> texts = new ArrayList<>();
+            readData(response, "translations", translation ->
+                    texts.add(new Text(JsonDecoder.readField(translation,
+                            "translatedText"), to)));
 
-        if (!request.ok()) { throw new TranslationError(request.code()); }
+            return texts.toArray(new Text[texts.size()]);
+        });
+    }
 
-        JsonArray translations = getDataObject(request.body())
-                .getAsJsonArray("translations");
+    @Override
+    protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+        Text[][] results = new Text[from.size()][];
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
 
-        ArrayList<Text> texts = new ArrayList<>();
-        for (JsonElement translation : translations) {
-            texts.add(new Text(translation
-                    .getAsJsonObject()
-                    .get("translatedText")
-                    .getAsString(), to));
+        for (int i = 0; i < from.size(); i++) {
+            final int index = i;
+            if (isTooLong(from.get(i))) {
+                requests.add(translateImpl(from.get(i), to)
+                        .thenAccept(translations -> results[index] = translations));
+            } else {
+                indexes.add(i);
+            }
         }
 
-        return texts.toArray(new Text[texts.size()]);
+        for (List<Integer> group : pack(from, indexes, maxSegments)) {
+            List<Text> segments = new ArrayList<>();
+            for (int i : group) {
+                segments.add(from.get(i));
+            }
+
+            requests.add(post("", repeat(
+                    "q", segments,
+                    "key", getApiKey(),
+                    "target", to.toString(),
+                    "fields", translateFields
+            )).thenAccept(response -> {
+                // Translations are listed in the same order as the q parameters.
+                int[] index = {0};
+                readData(response, "translations", translation ->
+                        results[group.get(index[0]++)] = new Text[]{new Text(
+                                JsonDecoder.readField(translation, "translatedText"), to)});
+            }));
+        }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> results);
     }
 
     @Override
-    protected Language[] identifyImpl(String mysteryText) throws TranslationError {
-        HttpRequest request = getRequest(
+    protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+        return post(
                 "/detect",
                 "key", getApiKey(),
-                "q", mysteryText
-        );
+                "q", mysteryText,
+                "fields", detectFields
+        ).thenApply(response -> {
+            // Each submitted string has its results in a languageGroup. Only one
+            // string was sent, so there is only one group.
+            List<Language[]> languageGroups = new ArrayList<>();
+            readData(response, "detections", group -> languageGroups.add(toLanguages(group)));
 
-        if (!request.ok()) { throw new TranslationError(request.code()); }
+            Language[] results = languageGroups.get(0);
+            return results != null ? results : new Language[]{Language.UND};
+        });
+    }
 
-        // Multiple strings can be submitted to the service. Each string's results
-        // would be in a languageGroup. However, batch string requests are not
-        // currently implemented, which means languageGroup only has one element.
-        // TODO: Batch string requests.
-        JsonArray languageGroups = getDataObject(request.body())
-                .getAsJsonArray("detections");
+    @Override
+    protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+        Language[][] results = new Language[mysteryTexts.size()][];
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
 
-        ArrayList<Language> results = new ArrayList<>();
-        for (JsonElement languageGroup : languageGroups) {
-            for (JsonElement language : languageGroup.getAsJsonArray()) {
-                try {
-                    results.add(Language.valueOf(language
-                            .getAsJsonObject()
-                            .get("language")
-                            .getAsString()
-                            .toUpperCase()));
-                } catch (IllegalArgumentException e) {
-                    // Google will set the language to "und", which is not
-                    // a valid Language value, if the text cannot be identified.
-                    if (e.getMessage().contains("Language.UND")) {
-                        // TODO: Normalize this across Translators.
-                        throw new TranslationError(404);
-                    }
-                }
+        for (int i = 0; i < mysteryTexts.size(); i++) {
+            final int index = i;
+            if (mysteryTexts.get(i).length() > getMaxRequestChars()) {
+                // Sent alone, as identify would send it.
+                requests.add(identifyImpl(mysteryTexts.get(i))
+                        .thenAccept(languages -> results[index] = languages));
+            } else {
+                indexes.add(i);
             }
         }
-        return results.toArray(new Language[results.size()]);
+
+        for (List<Integer> group : pack(mysteryTexts, indexes, maxSegments)) {
+            List<String> segments = new ArrayList<>();
+            for (int i : group) {
+                segments.add(mysteryTexts.get(i));
+            }
+
+            requests.add(post("/detect", repeat(
+                    "q", segments,
+                    "key", getApiKey(),
+                    "fields", detectFields
+            )).thenAccept(response -> {
+                // Detections are listed in the same order as the q parameters.
+                int[] index = {0};
+                readData(response, "detections", detections -> {
+                    Language[] languages = toLanguages(detections);
+                    results[group.get(index[0]++)] =
+                            languages != null ? languages : new Language[0];
+                });
+            }));
+        }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> results);
+    }
+
+    @Override
+    protected CompletableFuture<Boolean> hasSupportImpl(Language from, Language to) {
+        return getSupport().thenApply(matrix -> matrix.isSupported(from, to));
     }
 
     @Override
-    protected boolean hasSupportImpl(Language from, Language to) throws TranslationError {
-        HttpRequest request = getRequest(
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        return post(
                 "/languages",
                 "key", getApiKey(),
-                "target", to.toString()
-        );
+                "fields", languagesFields
+        ).thenApply(response -> {
+            // Google can translate between any two of its languages.
+            ArrayList<Language> supported = new ArrayList<>();
+            readData(response, "languages", language -> {
+                Language supportedLanguage =
+                        Language.fromCode(JsonDecoder.readField(language, "language"));
+                // Some codes have no Language value.
+                if (supportedLanguage != null) { supported.add(supportedLanguage); }
+            });
 
-        if (!request.ok()) { throw new TranslationError(request.code()); }
+            SupportMatrix matrix = new SupportMatrix();
+            matrix.addAll(supported);
+            return matrix;
+        });
+    }
 
-        JsonArray sourceLanguages = getDataObject(request.body())
-                .getAsJsonArray("languages");
+    @Override
+    public int getMaxRequestChars() { return maxRequestChars; }
 
-        for (JsonElement sourceLanguage : sourceLanguages) {
-            if (sourceLanguage
-                    .getAsJsonObject()
-                    .get("language")
-                    .getAsString()
-                    .equals(from.toString())) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    protected boolean isQuotaError(int code) {
+        // Google uses 403 for exceeded daily limits and 429 for exceeded rates.
+        return code == 403 || code == 429;
     }
 
-    private HttpRequest getRequest(String path, Object... params) {
-        return HttpRequest.post(
-                getHost() + path, true,
-                params
-        ).header("Content-Length", 0).send("");
+    /**
+     * Reads a languageGroup from a detection response as Language values.
+     *
+     * @return the languages, or null if Google could not identify the text
+     */
+    private static Language[] toLanguages(JsonReader languageGroup) throws IOException {
+        ArrayList<Language> results = new ArrayList<>();
+        boolean[] isUndetermined = {false};
+        JsonDecoder.readArray(languageGroup, language -> {
+            Language result = Language.fromCode(JsonDecoder.readField(language, "language"));
+            // Google sets the language to "und" if the text cannot be identified.
+            if (result == Language.UND) {
+                isUndetermined[0] = true;
+                return;
+            }
+            // Some codes have no Language value.
+            if (result != null) { results.add(result); }
+        });
+        return isUndetermined[0] ? null : results.toArray(new Language[results.size()]);
     }
 
-    private JsonObject getDataObject(String requestBody) {
-        return parser.parse(requestBody).getAsJsonObject().getAsJsonObject("data");
+    /**
+     * Passes each element of the array 'field' in the response's data object
+     * to 'element', failing if the service reported an error.
+     */
+    private void readData(Transport.Response response, String field,
+                          JsonDecoder.ElementReader element) {
+        if (!response.ok()) { throw new TranslationError(response.code()); }
+
+        long start = System.nanoTime();
+        boolean isFound = false;
+        try (JsonReader reader = JsonDecoder.open(response)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("data")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals(field)) {
+                        JsonDecoder.readArray(reader, element);
+                        isFound = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw JsonDecoder.malformed(e);
+        } finally {
+            recordParse(response, start);
+        }
+        if (!isFound) { throw JsonDecoder.missing(field); }
     }
 }
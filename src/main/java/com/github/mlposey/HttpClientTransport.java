@@ -0,0 +1,175 @@
+package com.github.mlposey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>A {@link Transport} built on {@link HttpClient}.</p>
+ *
+ * Connections are kept alive and reused between requests, and HTTP/2 is used
+ * when the service supports it, so many requests can share one connection.
+ * Requests are sent asynchronously and no thread waits on a response.
+ *
+ * <p>Parameters are sent as a form body, so that long texts do not make long
+ * URLs: percent-encoding triples the size of most non-Latin text. A compact
+ * transport also compresses bodies of 1 KB or more with gzip and asks for
+ * gzip-compressed responses. This takes a little CPU time to save most of the
+ * bytes of large requests and responses.</p>
+ */
+public class HttpClientTransport implements Transport {
+    // Smaller bodies gain too little from compression to be worth it
+    private static final int minCompressedBytes = 1024;
+
+    private final HttpClient client;
+    private final boolean isCompact;
+
+    // Created when first needed so that Translators which never send
+    // requests do not start a client.
+    private static class DefaultHolder {
+        static final HttpClientTransport transport = new HttpClientTransport();
+    }
+
+    /**
+     * Constructs an HttpClientTransport object with its own connection pool.
+     */
+    public HttpClientTransport() {
+        this(false);
+    }
+
+    /**
+     * Constructs an HttpClientTransport object with its own connection pool.
+     *
+     * @param isCompact true if requests and responses should be compressed
+     */
+    public HttpClientTransport(boolean isCompact) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build(), isCompact);
+    }
+
+    /**
+     * Constructs an HttpClientTransport object.
+     *
+     * @param client the client that sends requests
+     */
+    public HttpClientTransport(final HttpClient client) {
+        this(client, false);
+    }
+
+    /**
+     * Constructs an HttpClientTransport object.
+     *
+     * @param client the client that sends requests
+     * @param isCompact true if requests and responses should be compressed
+     */
+    public HttpClientTransport(final HttpClient client, boolean isCompact) {
+        this.client = client;
+        this.isCompact = isCompact;
+    }
+
+    /**
+     * Returns a transport that is shared by all Translators that were not
+     * given one, so that they also share connections.
+     */
+    public static HttpClientTransport getDefault() { return DefaultHolder.transport; }
+
+    @Override
+    public CompletableFuture<Response> post(String url, Object... params) {
+        return post(url, null, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The timeout covers connecting and waiting for the response. On Java
+     * 16 and later, cancelling the future closes the exchange.</p>
+     */
+    @Override
+    public CompletableFuture<Response> post(String url, Duration timeout, Object... params) {
+        // The form is URL-encoded, so each of its characters is a byte.
+        byte[] body = encode(params).getBytes(StandardCharsets.US_ASCII);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded");
+        if (isCompact) {
+            builder.header("Accept-Encoding", "gzip");
+            if (body.length >= minCompressedBytes) {
+                body = gzip(body);
+                builder.header("Content-Encoding", "gzip");
+            }
+        }
+        if (timeout != null) { builder.timeout(timeout); }
+        HttpRequest request = builder.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        long bytesSent = body.length;
+
+        CompletableFuture<HttpResponse<byte[]>> sent =
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<Response> result = sent
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        throw new TranslationError(TranslationError.NETWORK_ERROR, Translator.unwrap(ex));
+                    }
+                    byte[] received = response.body();
+                    boolean isGzipped = response.headers().firstValue("Content-Encoding")
+                            .map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false);
+                    return new Response(response.statusCode(),
+                            isGzipped ? gunzip(received) : received,
+                            response.headers().map(), bytesSent, received.length);
+                });
+        // Cancelling a dependent stage does not reach the exchange by itself.
+        result.whenComplete((response, ex) -> {
+            if (result.isCancelled()) { sent.cancel(true); }
+        });
+        return result;
+    }
+
+    /** Returns params as a URL-encoded form. */
+    static String encode(Object... params) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (query.length() > 0) { query.append('&'); }
+            query.append(URLEncoder.encode(asString(params[i]), StandardCharsets.UTF_8))
+                 .append('=')
+                 .append(URLEncoder.encode(asString(params[i + 1]), StandardCharsets.UTF_8));
+        }
+        return query.toString();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream does not throw.
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw JsonDecoder.malformed(e);
+        }
+    }
+
+    // A Key whose variable is not set has a null string value.
+    private static String asString(Object param) {
+        String value = param != null ? param.toString() : null;
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.mlposey;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for reading service responses as a stream of JSON tokens.
+ *
+ * Only the values a {@link Translator} needs are read; everything else is
+ * skipped without being decoded into strings or trees.
+ */
+final class JsonDecoder {
+    private JsonDecoder() {}
+
+    /** Reads one element of a JSON array. */
+    interface ElementReader {
+        void read(JsonReader reader) throws IOException;
+    }
+
+    /** Returns a reader over the body of 'response'. */
+    static JsonReader open(Transport.Response response) {
+        return new JsonReader(new Utf8Reader(response.bytes()));
+    }
+
+    /** Passes each element of the array at the reader's position to 'element'. */
+    static void readArray(JsonReader reader, ElementReader element) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            element.read(reader);
+        }
+        reader.endArray();
+    }
+
+    /** Reads an array of strings. */
+    static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        readArray(reader, element -> values.add(element.nextString()));
+        return values;
+    }
+
+    /**
+     * Reads an object and returns the string value of its field 'name', or
+     * null if it has no such field.
+     */
+    static String readField(JsonReader reader, String name) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(name)) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    /** Converts an error from reading a response to the error a parser would throw. */
+    static JsonParseException malformed(Exception e) {
+        return new JsonParseException("Malformed response", e);
+    }
+
+    /** Returns the error for a response that lacks a required field. */
+    static JsonParseException missing(String field) {
+        return new JsonParseException("Response has no field " + field);
+    }
+
+    /**
+     * Decodes UTF-8 bytes as they are read.
+     *
+     * Unlike InputStreamReader, it needs no buffer of its own, which would be
+     * larger than most responses. Malformed bytes are read as U+FFFD.
+     */
+    static final class Utf8Reader extends Reader {
+        private final byte[] bytes;
+        private int position;
+        // The second half of a surrogate pair that did not fit in the last read
+        private char pending;
+
+        Utf8Reader(byte[] bytes) { this.bytes = bytes; }
+
+        @Override
+        public int read(char[] chars, int offset, int length) {
+            if (length == 0) { return 0; }
+            if (position == bytes.length && pending == 0) { return -1; }
+
+            int end = offset + length;
+            int i = offset;
+            if (pending != 0) {
+                chars[i++] = pending;
+                pending = 0;
+            }
+
+            while (i < end && position < bytes.length) {
+                int b = bytes[position];
+                if (b >= 0) {
+                    chars[i++] = (char) b;
+                    position++;
+                    continue;
+                }
+
+                int codePoint = decode();
+                if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    chars[i++] = (char) codePoint;
+                } else {
+                    chars[i++] = Character.highSurrogate(codePoint);
+                    if (i < end) {
+                        chars[i++] = Character.lowSurrogate(codePoint);
+                    } else {
+                        pending = Character.lowSurrogate(codePoint);
+                    }
+                }
+            }
+            return i - offset;
+        }
+
+        /** Decodes the multi-byte sequence at the current position. */
+        private int decode() {
+            int b = bytes[position] & 0xff;
+            int length;
+            int codePoint;
+            int min;
+            if (b >= 0xc2 && b <= 0xdf) {
+                length = 2; codePoint = b & 0x1f; min = 0x80;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                length = 3; codePoint = b & 0x0f; min = 0x800;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                length = 4; codePoint = b & 0x07; min = 0x10000;
+            } else {
+                position++;
+                return '\uFFFD';
+            }
+
+            int i = 1;
+            for (; i < length; i++) {
+                if (position + i >= bytes.length || (bytes[position + i] & 0xc0) != 0x80) {
+                    break;
+                }
+                codePoint = codePoint << 6 | (bytes[position + i] & 0x3f);
+            }
+            if (i < length || codePoint < min || codePoint > Character.MAX_CODE_POINT ||
+                    Character.isSurrogate((char) codePoint) && codePoint < 0x10000) {
+                // Only the bytes that belong to the malformed sequence are skipped.
+                position += Math.max(1, i);
+                return '\uFFFD';
+            }
+            position += length;
+            return codePoint;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -4,7 +4,8 @@ package com.github.mlposey;
  * A key for a translation service's API.
  *
  * <p>Keys are set as environment variables. The name of the variable is retrievable
- * with {@link Key#var()}, and the key itself is mapped to the toString method.</p>
+ * with {@link Key#var()}, and the key itself is mapped to the toString method.
+ * A service can also be given several keys with a {@link KeyPool}.</p>
  *
  * Standard Names: <br>
  * - Yandex.Translate: YANDEX_API_KEY <br>
@@ -20,12 +21,18 @@ public enum Key {
         public String var() { return "GOOGLE_API_KEY"; }
     };
 
+    // The value of the variable, read when it is first needed
+    private String value;
+
     /** Returns the name of the key's environment variable. */
     public abstract String var();
 
-    /** Returns the value of the key. */
+    /** Returns the value of the key, or null if its variable is not set. */
     @Override
     public String toString() {
-        return System.getenv(var());
+        // The environment does not change, so threads that race here read
+        // the same value.
+        if (value == null) { value = System.getenv(var()); }
+        return value;
     }
 }
@@ -0,0 +1,173 @@
+package com.github.mlposey;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Several API keys for one service, used in turn by a {@link Translator}.</p>
+ *
+ * Each request is sent with the key that has the fewest requests in flight,
+ * weighted by the rate of recent errors with that key. Ties are broken in
+ * turn, so requests spread evenly across healthy keys and each key's quota is
+ * used at the same pace. Throughput grows with the number of keys.
+ *
+ * <p>A key that gets a quota error is quarantined: it is not used until the
+ * service's Retry-After time or, without one, an interval that starts at 30
+ * seconds and doubles for each consecutive quota error, up to 10 minutes. It
+ * is restored automatically. If every key is quarantined, the one that is
+ * restored first is used. A {@link RateLimiter} only lowers its rate for a
+ * quota error when no key is left.</p>
+ *
+ * <p>Quotas belong to keys, so one KeyPool should be shared by all Translators
+ * that use the same keys.</p>
+ *
+ * <pre>
+ * KeyPool keys = KeyPool.fromEnvironment(Key.GOOGLE); // GOOGLE_API_KEY, GOOGLE_API_KEY_2, ...
+ * translator.setKeyPool(keys);
+ * </pre>
+ *
+ * @see Translator#setKeyPool(KeyPool)
+ */
+public class KeyPool {
+    private static final long minQuarantine = TimeUnit.SECONDS.toNanos(30);
+    private static final long maxQuarantine = TimeUnit.MINUTES.toNanos(10);
+    // How much each response moves a key's error rate
+    private static final double errorWeight = 0.1;
+
+    /** One key and what is known about its health. */
+    static final class Entry {
+        final String value;
+        int inFlight;
+        double errorRate;
+        // A time from System.nanoTime(), which may be negative
+        long quarantinedUntil = System.nanoTime();
+        int quotaErrors;
+
+        Entry(String value) {
+            this.value = value;
+        }
+    }
+
+    private final Entry[] entries;
+    // The key that is tried first by the next acquire
+    private int next;
+
+    /**
+     * Constructs a KeyPool object.
+     *
+     * @param keys the values of the keys
+     * @throws IllegalArgumentException if 'keys' is empty
+     */
+    public KeyPool(List<String> keys) {
+        if (keys.isEmpty()) { throw new IllegalArgumentException("A KeyPool needs a key"); }
+        entries = new Entry[keys.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry(keys.get(i));
+        }
+    }
+
+    /**
+     * Reads keys from the key's environment variable (e.g., GOOGLE_API_KEY)
+     * and from numbered variables that follow it (GOOGLE_API_KEY_2,
+     * GOOGLE_API_KEY_3, ...), up to the first that is not set.
+     *
+     * @throws IllegalArgumentException if none of the variables is set
+     */
+    public static KeyPool fromEnvironment(final Key key) {
+        List<String> keys = new ArrayList<>();
+        if (key.toString() != null) { keys.add(key.toString()); }
+        for (int i = 2; System.getenv(key.var() + '_' + i) != null; i++) {
+            keys.add(System.getenv(key.var() + '_' + i));
+        }
+        return new KeyPool(keys);
+    }
+
+    /**
+     * Reads keys from a file that has one key per line. Blank lines and lines
+     * that start with # are skipped.
+     *
+     * @throws IOException if the file could not be read
+     * @throws IllegalArgumentException if the file has no keys
+     */
+    public static KeyPool fromFile(Path file) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) { keys.add(line); }
+        }
+        return new KeyPool(keys);
+    }
+
+    /** Returns the number of keys in the pool. */
+    public int getKeyCount() { return entries.length; }
+
+    /** Returns the number of keys that are not quarantined. */
+    public synchronized int getAvailableCount() {
+        long now = System.nanoTime();
+        int available = 0;
+        for (Entry entry : entries) {
+            if (entry.quarantinedUntil - now <= 0) { available++; }
+        }
+        return available;
+    }
+
+    /** Chooses the key for a request and counts the request against it. */
+    synchronized Entry acquire() {
+        long now = System.nanoTime();
+        int best = -1;
+        double bestLoad = Double.MAX_VALUE;
+        int soonest = 0;
+        for (int i = 0; i < entries.length; i++) {
+            int index = (next + i) % entries.length;
+            Entry entry = entries[index];
+            if (entry.quarantinedUntil - now > 0) {
+                if (entry.quarantinedUntil - entries[soonest].quarantinedUntil < 0) {
+                    soonest = index;
+                }
+                continue;
+            }
+            // A key that fails half of its requests counts as three times as busy.
+            double load = (entry.inFlight + 1) * (1 + 4 * entry.errorRate);
+            if (load < bestLoad) {
+                best = index;
+                bestLoad = load;
+            }
+        }
+        if (best < 0) { best = soonest; }
+        next = (best + 1) % entries.length;
+        entries[best].inFlight++;
+        return entries[best];
+    }
+
+    /**
+     * Records the outcome of a request sent with a key.
+     *
+     * @param entry the key returned by acquire
+     * @param isError true if the request failed
+     * @param isQuotaError true if the service reported an exceeded quota
+     * @param retryAfter the delay in milliseconds that the service asked for, or -1
+     */
+    synchronized void release(Entry entry, boolean isError, boolean isQuotaError,
+                              long retryAfter) {
+        entry.inFlight--;
+        entry.errorRate += ((isError ? 1 : 0) - entry.errorRate) * errorWeight;
+        if (!isQuotaError) {
+            if (!isError) { entry.quotaErrors = 0; }
+            return;
+        }
+
+        long now = System.nanoTime();
+        // Requests that were in flight when the quota ran out do not extend
+        // the quarantine.
+        if (entry.quarantinedUntil - now > 0) { return; }
+        long quarantine = retryAfter >= 0 ? TimeUnit.MILLISECONDS.toNanos(retryAfter) :
+                Math.min(maxQuarantine, minQuarantine << Math.min(entry.quotaErrors, 10));
+        entry.quotaErrors++;
+        entry.quarantinedUntil = now + quarantine;
+    }
+}
@@ -3,6 +3,11 @@ package com.github.mlposey;
 /**
  * <p>An ISO 639-1 code for a language.</p>
  *
+ * A few languages also have variants with a BCP 47 region or script subtag
+ * (e.g., zh-TW or sr-Latn), because the services translate them separately.
+ * {@link Language#UND} stands for text whose language could not be
+ * determined.
+ *
  * Based on: http://data.okfn.org/data/core/language-codes
  */
 public enum Language {
@@ -190,15 +195,163 @@ public enum Language {
             ZA, // Zhuang; Chuang
             ZH, // Chinese
             ZU, // Zulu
+            ZH_CN, // Chinese (Simplified, China)
+            ZH_TW, // Chinese (Traditional, Taiwan)
+            PT_BR, // Portuguese (Brazil)
+            PT_PT, // Portuguese (Portugal)
+            SR_CYRL, // Serbian (Cyrillic script)
+            SR_LATN, // Serbian (Latin script)
+            UND, // Undetermined
             TEST; // For testing
 
-    /** Returns a true, lowercase code for the language. */
+    // The BCP 47 code (e.g., en, zh-TW, or sr-Latn)
+    private final String code;
+
+    Language() {
+        code = toCode(name());
+    }
+
+    /** Returns a true code for the language, such as en, zh-TW, or sr-Latn. */
     public String toString() {
-        return this.name().toLowerCase();
+        return code;
     }
 
-    /** Returns a concatenation of this code followed by a hyphen and the code of 'lang'. */
+    /**
+     * Returns a concatenation of this code followed by a hyphen and the code of 'lang'.
+     * The strings are built once and then reused.
+     */
     public String concat(final Language lang) {
-        return this + "-" + lang;
+        int index = ordinal() * Pairs.count + lang.ordinal();
+        String pair = Pairs.pairs[index];
+        if (pair == null) {
+            // Threads that race here build equal strings, so either can be kept.
+            pair = code + '-' + lang.code;
+            Pairs.pairs[index] = pair;
+        }
+        return pair;
+    }
+
+    /**
+     * Returns the language without its region or script (e.g., ZH for ZH_TW),
+     * or this language if it has neither.
+     */
+    public Language getBase() {
+        int split = code.indexOf('-');
+        return split < 0 ? this : fromCode(code, 0, split);
+    }
+
+    /**
+     * Returns the language that a code stands for.
+     *
+     * <p>Codes are matched without regard to case, and subtags may be separated
+     * by hyphens or underscores. Obsolete codes that the services still send
+     * (e.g., iw for Hebrew) are also recognized. This neither allocates nor
+     * throws, so it is suited to decoding responses.</p>
+     *
+     * @param code a language code, such as en, zh-TW, or und
+     * @return the language, or null if the code has no Language value
+     */
+    public static Language fromCode(CharSequence code) {
+        return fromCode(code, 0, code.length());
+    }
+
+    /**
+     * Returns the language that the code from 'start' to 'end' in 'code'
+     * stands for, or null if it has no Language value.
+     *
+     * @see Language#fromCode(CharSequence)
+     */
+    public static Language fromCode(CharSequence code, int start, int end) {
+        return Codes.find(code, start, end);
+    }
+
+    /** Converts a constant name (e.g., SR_LATN) to its code (e.g., sr-Latn). */
+    private static String toCode(String name) {
+        StringBuilder code = new StringBuilder(name.length());
+        String[] subtags = name.split("_");
+        code.append(subtags[0].toLowerCase());
+        for (int i = 1; i < subtags.length; i++) {
+            String subtag = subtags[i];
+            code.append('-');
+            // Regions are uppercase, and scripts are capitalized.
+            if (subtag.length() == 2) {
+                code.append(subtag);
+            } else {
+                code.append(subtag.charAt(0)).append(subtag.substring(1).toLowerCase());
+            }
+        }
+        return code.toString();
+    }
+
+    /** The strings returned by concat, filled in as they are needed. */
+    private static class Pairs {
+        static final int count = values().length;
+        static final String[] pairs = new String[count * count];
+    }
+
+    /** An open-addressing table of codes, built once. */
+    private static class Codes {
+        // Codes that the services send but that were replaced in ISO 639-1
+        private static final String[][] aliases = {
+                {"iw", "he"}, {"jw", "jv"}, {"in", "id"}, {"ji", "yi"},
+                {"zh-hans", "zh-cn"}, {"zh-hant", "zh-tw"}
+        };
+
+        private static final String[] keys = new String[1024];
+        private static final Language[] languages = new Language[keys.length];
+
+        static {
+            for (Language language : values()) {
+                add(language.code.toLowerCase(), language);
+            }
+            for (String[] alias : aliases) {
+                add(alias[0], find(alias[1], 0, alias[1].length()));
+            }
+        }
+
+        private static void add(String key, Language language) {
+            int slot = hash(key, 0, key.length()) & (keys.length - 1);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            languages[slot] = language;
+        }
+
+        static Language find(CharSequence code, int start, int end) {
+            int hash = hash(code, start, end);
+            if (hash == -1) { return null; }
+
+            for (int slot = hash & (keys.length - 1); keys[slot] != null;
+                 slot = (slot + 1) & (keys.length - 1)) {
+                if (matches(keys[slot], code, start, end)) { return languages[slot]; }
+            }
+            return null;
+        }
+
+        /** Returns the hash of the normalized code, or -1 if it is not ASCII. */
+        private static int hash(CharSequence code, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                char c = normalize(code.charAt(i));
+                if (c > 0x7f) { return -1; }
+                hash = hash * 31 + c;
+            }
+            return hash & 0x7fffffff;
+        }
+
+        private static boolean matches(String key, CharSequence code, int start, int end) {
+            if (key.length() != end - start) { return false; }
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != normalize(code.charAt(start + i))) { return false; }
+            }
+            return true;
+        }
+
+        /** Lowercases ASCII letters and replaces underscores with hyphens. */
+        private static char normalize(char c) {
+            if (c >= 'A' && c <= 'Z') { return (char) (c + ('a' - 'A')); }
+            return c == '_' ? '-' : c;
+        }
     }
 }
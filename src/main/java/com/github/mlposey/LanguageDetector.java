@@ -0,0 +1,263 @@
+package com.github.mlposey;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>Identifies the language of a text without contacting a service.</p>
+ *
+ * A LanguageDetector compares the character n-grams (of one to three
+ * characters) in a text with profiles of 52 languages that ship with the kit.
+ * The profiles are loaded once, when the first detector is created, and a
+ * detection takes microseconds.
+ *
+ * <p>Short or mixed texts are often ambiguous, so a language is only reported
+ * if its probability reaches the detector's confidence threshold. A
+ * {@link Translator} with a detector asks the service about the texts that
+ * the detector is unsure of.</p>
+ *
+ * <pre>
+ * Translator translator = Translators.get(Key.GOOGLE);
+ * translator.setLanguageDetector(new LanguageDetector(0.99));
+ * </pre>
+ *
+ * @see Translator#setLanguageDetector(LanguageDetector)
+ */
+public class LanguageDetector {
+    // The longest n-gram in the profiles
+    private static final int maxLength = 3;
+    // Only the start of long texts is read, since it is enough to be confident.
+    private static final int maxChars = 1000;
+
+    private final Profiles profiles = Profiles.instance;
+    private final double threshold;
+
+    /**
+     * Constructs a LanguageDetector object that reports languages whose
+     * probability is at least 0.99.
+     */
+    public LanguageDetector() {
+        this(0.99);
+    }
+
+    /**
+     * Constructs a LanguageDetector object.
+     *
+     * @param threshold the lowest probability, between 0 and 1, with which a
+     *                  language is reported
+     */
+    public LanguageDetector(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Identifies the language of a text.
+     *
+     * @param text a text of unknown language origins
+     * @return the most likely language, or null if its probability is below
+     *         the threshold
+     */
+    public Language detect(String text) {
+        double[] probabilities = probabilities(text);
+        if (probabilities == null) { return null; }
+
+        int best = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[best]) { best = i; }
+        }
+        return probabilities[best] >= threshold ? profiles.languages[best] : null;
+    }
+
+    /**
+     * Returns the probability of each profiled language, in the order of
+     * their profiles, or null if the text has no letters.
+     */
+    double[] probabilities(String text) {
+        int languageCount = profiles.languages.length;
+        double[] scores = new double[languageCount];
+        int[] gramCounts = new int[maxLength];
+
+        // Each word is padded with spaces, as it was when the profiles were
+        // made. The last three characters are packed into 'window'.
+        long window = ' ';
+        int wordLength = 1;
+        int length = Math.min(text.length(), maxChars);
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? normalize(text.charAt(i)) : ' ';
+            if (c == ' ' && wordLength == 1) { continue; }
+            window = (window << 16 | c) & 0xffffffffffffL;
+            wordLength++;
+
+            for (int n = 1; n <= maxLength && n <= wordLength; n++) {
+                if (n == 1 && c == ' ') { continue; }
+                gramCounts[n - 1]++;
+                Gram gram = profiles.find(window & ((1L << 16 * n) - 1));
+                if (gram == null) { continue; }
+                for (int j = 0; j < gram.languages.length; j++) {
+                    scores[gram.languages[j]] += gram.gains[j];
+                }
+            }
+            if (c == ' ') {
+                window = ' ';
+                wordLength = 1;
+            }
+        }
+        if (gramCounts[0] == 0) { return null; }
+
+        // N-grams missing from a profile are given the language's floor.
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < languageCount; i++) {
+            for (int n = 0; n < maxLength; n++) {
+                scores[i] += gramCounts[n] * profiles.floors[i][n];
+            }
+            max = Math.max(max, scores[i]);
+        }
+
+        double sum = 0;
+        for (int i = 0; i < languageCount; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+            sum += scores[i];
+        }
+        for (int i = 0; i < languageCount; i++) {
+            scores[i] /= sum;
+        }
+        return scores;
+    }
+
+    /**
+     * Maps a character to the form used in the profiles. Letters are lowercased,
+     * other characters become spaces, and scripts whose characters are too
+     * numerous to profile one by one are mapped to a single character.
+     */
+    private static char normalize(char c) {
+        if (c >= '\u3040' && c <= '\u309f') { return '\u3042'; } // Hiragana
+        if (c >= '\u30a0' && c <= '\u30ff') { return '\u30a2'; } // Katakana
+        if (c >= '\u3100' && c <= '\u312f') { return '\u3105'; } // Bopomofo
+        if (c >= '\u4e00' && c <= '\u9fff') { return '\u4e00'; } // CJK ideographs
+        if (c >= '\uac00' && c <= '\ud7af') { return '\uac00'; } // Hangul
+        if (c == '\u06cc') { return '\u064a'; }                   // Farsi yeh
+        if (c >= '\u1ea0' && c <= '\u1eff') { return '\u1ec3'; } // Vietnamese
+        return Character.isLetter(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    /** The languages that use an n-gram and how much it adds to their scores. */
+    private static class Gram {
+        final int[] languages;
+        final float[] gains;
+
+        Gram(int[] languages, float[] gains) {
+            this.languages = languages;
+            this.gains = gains;
+        }
+    }
+
+    /** The n-gram profiles, loaded from the kit's resources on first use. */
+    private static class Profiles {
+        static final Profiles instance = read();
+
+        final Language[] languages;
+        // An open-addressing table of n-grams, keyed by their packed characters
+        private final long[] keys;
+        private final Gram[] grams;
+        // The log probability of an n-gram that is missing from a profile, by
+        // language and n-gram length
+        final double[][] floors;
+
+        private static Profiles read() {
+            try (InputStream stream = new GZIPInputStream(
+                    LanguageDetector.class.getResourceAsStream("languages.ngrams.gz"))) {
+                return new Profiles(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads profiles with one language per line: a code followed by pairs
+         * of n-grams and weights, where a weight is -10 ln(p).
+         */
+        private Profiles(InputStream stream) throws IOException {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, StandardCharsets.UTF_8));
+            List<String[]> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) { lines.add(line.split(" ")); }
+            }
+
+            languages = new Language[lines.size()];
+            floors = new double[lines.size()][maxLength];
+            Map<String, List<float[]>> uses = new HashMap<>();
+            for (int i = 0; i < lines.size(); i++) {
+                String[] fields = lines.get(i);
+                languages[i] = Language.fromCode(fields[0]);
+
+                int[] maxWeights = new int[maxLength];
+                for (int j = 1; j < fields.length; j += 2) {
+                    String gram = fields[j].replace('_', ' ');
+                    int weight = Integer.parseInt(fields[j + 1]);
+                    maxWeights[gram.length() - 1] = Math.max(maxWeights[gram.length() - 1], weight);
+                    uses.computeIfAbsent(gram, g -> new ArrayList<>())
+                            .add(new float[] {i, -weight / 10f});
+                }
+                // A missing n-gram is less likely than the rarest one profiled.
+                for (int n = 0; n < maxLength; n++) {
+                    floors[i][n] = -(maxWeights[n] + 10) / 10.0;
+                }
+            }
+
+            int capacity = Integer.highestOneBit(uses.size()) * 4;
+            keys = new long[capacity];
+            grams = new Gram[capacity];
+
+            // Scores start at the floor, so each n-gram stores its gain over it.
+            for (Map.Entry<String, List<float[]>> use : uses.entrySet()) {
+                int n = use.getKey().length() - 1;
+                int[] gramLanguages = new int[use.getValue().size()];
+                float[] gains = new float[gramLanguages.length];
+                for (int j = 0; j < gramLanguages.length; j++) {
+                    float[] pair = use.getValue().get(j);
+                    gramLanguages[j] = (int) pair[0];
+                    gains[j] = (float) (pair[1] - floors[gramLanguages[j]][n]);
+                }
+
+                int slot = slot(pack(use.getKey()));
+                keys[slot] = pack(use.getKey());
+                grams[slot] = new Gram(gramLanguages, gains);
+            }
+        }
+
+        /** Returns the n-gram whose packed characters are 'key', or null. */
+        Gram find(long key) {
+            return grams[slot(key)];
+        }
+
+        /** Returns the slot that holds 'key', or the empty slot where it belongs. */
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9e3779b97f4a7c15L) >>> 40) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** Packs the characters of an n-gram into a long, 16 bits each. */
+        private static long pack(String gram) {
+            long key = 0;
+            for (int i = 0; i < gram.length(); i++) {
+                key = key << 16 | gram.charAt(i);
+            }
+            return key;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.mlposey;
+
+/**
+ * <p>Receives measurements from a {@link Translator} as they are made.</p>
+ *
+ * Listeners are called on the thread that completed the measured work, so
+ * they should return quickly. Every method has an empty default.
+ *
+ * @see TranslatorMetrics#addListener(MetricsListener)
+ */
+public interface MetricsListener {
+    /**
+     * Called when a translate, identify, or hasSupport call completes.
+     *
+     * @param operation the kind of call
+     * @param nanos the time from the start of the call to its result
+     * @param error the error the call failed with, or null if it succeeded
+     */
+    default void onCall(Operation operation, long nanos, Throwable error) {}
+
+    /**
+     * Called when a request to the service completes.
+     *
+     * @param operation the kind of call that sent the request
+     * @param queueNanos the time the request waited before it was sent
+     * @param networkNanos the time from sending the request to its response
+     * @param chars the number of characters of text that were sent
+     * @param status the HTTP status, or {@link TranslationError#NETWORK_ERROR}
+     */
+    default void onRequest(Operation operation, long queueNanos, long networkNanos,
+                           int chars, int status) {}
+
+    /**
+     * Called when a request to the service completes with a response.
+     *
+     * @param operation the kind of call that sent the request
+     * @param bytesSent the size of the request's parameters as sent
+     * @param bytesReceived the size of the response body as received
+     */
+    default void onTransfer(Operation operation, long bytesSent, long bytesReceived) {}
+
+    /**
+     * Called when a response has been decoded.
+     *
+     * @param operation the kind of call that sent the request
+     * @param nanos the time spent decoding the response
+     */
+    default void onParse(Operation operation, long nanos) {}
+}
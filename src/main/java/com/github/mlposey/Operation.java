@@ -0,0 +1,15 @@
+package com.github.mlposey;
+
+/**
+ * The kinds of work a {@link Translator} sends to a service.
+ *
+ * Batch requests are counted with the single requests of the same kind.
+ */
+public enum Operation {
+    /** Translating text to another language */
+    TRANSLATE,
+    /** Identifying the language of a text */
+    IDENTIFY,
+    /** Determining if the service supports a translation direction */
+    HAS_SUPPORT
+}
@@ -0,0 +1,161 @@
+package com.github.mlposey;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Measurements of one {@link Operation} of a {@link Translator}.</p>
+ *
+ * The time of each call is recorded, as well as the time each request to the
+ * service spent in three phases: <br>
+ * - queue: waiting for the {@link RateLimiter} <br>
+ * - network: waiting for the service to respond <br>
+ * - parse: decoding the response <br><br>
+ *
+ * A call may send many requests (e.g., a batch that is split or a request
+ * that is retried), so the phases need not add up to the call's time.
+ *
+ * @see TranslatorMetrics
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    // Error codes from minCode up to, but not including, minCode + codeCount
+    // are counted separately.
+    private static final int minCode = -32;
+    private static final int codeCount = 632;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram queue = new LatencyHistogram();
+    private final LatencyHistogram network = new LatencyHistogram();
+    private final LatencyHistogram parse = new LatencyHistogram();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLongArray errorsByCode = new AtomicLongArray(codeCount);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong charsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /** Returns the time from the start of each call to its result. */
+    public LatencyHistogram getLatency() { return latency; }
+
+    /** Returns the time requests waited before they were sent. */
+    public LatencyHistogram getQueueTime() { return queue; }
+
+    /** Returns the time from sending requests to their responses. */
+    public LatencyHistogram getNetworkTime() { return network; }
+
+    /** Returns the time spent decoding responses. */
+    public LatencyHistogram getParseTime() { return parse; }
+
+    @Override
+    public long getCallCount() { return calls.get(); }
+
+    /** Returns the number of calls that failed. */
+    @Override
+    public long getErrorCount() { return errors.get(); }
+
+    /**
+     * Returns the number of calls that failed with a {@link TranslationError}
+     * whose code is 'code'.
+     */
+    public long getErrorCount(int code) {
+        int index = code - minCode;
+        return index >= 0 && index < codeCount ? errorsByCode.get(index) : 0;
+    }
+
+    /** Returns the number of calls that have started but not finished. */
+    @Override
+    public int getInFlight() { return inFlight.get(); }
+
+    /** Returns the number of requests waiting for the {@link RateLimiter}. */
+    @Override
+    public int getQueued() { return queued.get(); }
+
+    /** Returns the number of characters of text sent to the service. */
+    @Override
+    public long getCharsSent() { return charsSent.get(); }
+
+    /**
+     * Returns the number of bytes of request parameters sent to the service,
+     * after any compression.
+     */
+    @Override
+    public long getBytesSent() { return bytesSent.get(); }
+
+    /**
+     * Returns the number of bytes of response bodies received from the
+     * service, before any decompression.
+     */
+    @Override
+    public long getBytesReceived() { return bytesReceived.get(); }
+
+    @Override
+    public double getLatencyP50() { return millis(latency, 50); }
+    @Override
+    public double getLatencyP99() { return millis(latency, 99); }
+    @Override
+    public double getLatencyP999() { return millis(latency, 99.9); }
+
+    @Override
+    public double getQueueP50() { return millis(queue, 50); }
+    @Override
+    public double getQueueP99() { return millis(queue, 99); }
+    @Override
+    public double getQueueP999() { return millis(queue, 99.9); }
+
+    @Override
+    public double getNetworkP50() { return millis(network, 50); }
+    @Override
+    public double getNetworkP99() { return millis(network, 99); }
+    @Override
+    public double getNetworkP999() { return millis(network, 99.9); }
+
+    @Override
+    public double getParseP50() { return millis(parse, 50); }
+    @Override
+    public double getParseP99() { return millis(parse, 99); }
+    @Override
+    public double getParseP999() { return millis(parse, 99.9); }
+
+    void startCall() { inFlight.incrementAndGet(); }
+
+    void finishCall(long nanos, Throwable error) {
+        inFlight.decrementAndGet();
+        calls.incrementAndGet();
+        latency.record(nanos);
+        if (error == null) { return; }
+
+        errors.incrementAndGet();
+        if (error instanceof TranslationError) {
+            int index = ((TranslationError) error).getCode() - minCode;
+            if (index >= 0 && index < codeCount) { errorsByCode.incrementAndGet(index); }
+        }
+    }
+
+    void startQueue() { queued.incrementAndGet(); }
+
+    void finishQueue(long nanos) {
+        queued.decrementAndGet();
+        queue.record(nanos);
+    }
+
+    void recordRequest(long nanos, int chars) {
+        network.record(nanos);
+        charsSent.addAndGet(chars);
+    }
+
+    void recordTransfer(long sent, long received) {
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+    }
+
+    void recordParse(long nanos) { parse.record(nanos); }
+
+    private static double millis(LatencyHistogram histogram, double percentile) {
+        return (double) histogram.getPercentile(percentile) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
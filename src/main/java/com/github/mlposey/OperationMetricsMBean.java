@@ -0,0 +1,31 @@
+package com.github.mlposey;
+
+/**
+ * The management interface of {@link OperationMetrics}. Durations are in
+ * milliseconds.
+ */
+public interface OperationMetricsMBean {
+    long getCallCount();
+    long getErrorCount();
+    int getInFlight();
+    int getQueued();
+    long getCharsSent();
+    long getBytesSent();
+    long getBytesReceived();
+
+    double getLatencyP50();
+    double getLatencyP99();
+    double getLatencyP999();
+
+    double getQueueP50();
+    double getQueueP99();
+    double getQueueP999();
+
+    double getNetworkP50();
+    double getNetworkP99();
+    double getNetworkP999();
+
+    double getParseP50();
+    double getParseP99();
+    double getParseP999();
+}
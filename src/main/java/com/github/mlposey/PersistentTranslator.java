@@ -0,0 +1,115 @@
+package com.github.mlposey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A {@link Translator} that keeps the translations of another Translator in
+ * a {@link TranslationMemory}.</p>
+ *
+ * <p>Translations are looked up in the memory before they are requested from
+ * the service, and every new translation is written to it. Because the memory
+ * is stored on disk, it is still available after the program restarts.
+ * Identification and support queries are passed directly to the service.</p>
+ *
+ * <p>Writing to the memory is best-effort: a translation that cannot be
+ * stored is still returned, and the failure is counted by
+ * {@link PersistentTranslator#getWriteErrorCount()}.</p>
+ */
+public class PersistentTranslator extends Translator {
+    private final Translator translator;
+    private final TranslationMemory memory;
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    /**
+     * Constructs a PersistentTranslator object that shares the executor and
+     * Transport of 'translator'.
+     *
+     * @param translator the Translator whose translations should be kept
+     * @param memory the memory that translations are read from and written to
+     */
+    public PersistentTranslator(final Translator translator,
+                                final TranslationMemory memory) {
+        super(translator.getApiKey(), translator.getHost(), translator.getTransport(),
+                translator.getExecutor());
+        this.translator = translator;
+        this.memory = memory;
+    }
+
+    @Override
+    protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+        Text[] stored = memory.get(getApiKey(), from, to);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        return translator.translateImpl(from, to).thenApply(translations -> {
+            store(from, to, translations);
+            return translations;
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+        Text[][] translations = new Text[from.size()][];
+
+        // Only the texts that are not in memory are sent to the service.
+        List<Integer> missing = new ArrayList<>();
+        List<Text> texts = new ArrayList<>();
+        for (int i = 0; i < from.size(); i++) {
+            translations[i] = memory.get(getApiKey(), from.get(i), to);
+            if (translations[i] == null) {
+                missing.add(i);
+                texts.add(from.get(i));
+            }
+        }
+
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(translations);
+        }
+        return translator.translateBatchImpl(texts, to).thenApply(results -> {
+            for (int i = 0; i < results.length; i++) {
+                store(texts.get(i), to, results[i]);
+                translations[missing.get(i)] = results[i];
+            }
+            return translations;
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+        return translator.identifyImpl(mysteryText);
+    }
+
+    @Override
+    protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+        return translator.identifyBatchImpl(mysteryTexts);
+    }
+
+    @Override
+    protected CompletableFuture<Boolean> hasSupportImpl(Language from, Language to) {
+        return translator.hasSupportImpl(from, to);
+    }
+
+    @Override
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        return translator.getSupport();
+    }
+
+    @Override
+    public int getMaxRequestChars() { return translator.getMaxRequestChars(); }
+
+    /** Returns the number of translations that could not be written to the memory. */
+    public long getWriteErrorCount() { return writeErrors.get(); }
+
+    private void store(Text from, Language to, Text[] translations) {
+        try {
+            memory.put(getApiKey(), from, to, translations);
+        } catch (IOException e) {
+            // The translation is still good; it will just be requested again.
+            writeErrors.incrementAndGet();
+        }
+    }
+}
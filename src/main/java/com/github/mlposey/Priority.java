@@ -0,0 +1,27 @@
+package com.github.mlposey;
+
+/**
+ * <p>How urgent an operation is.</p>
+ *
+ * Priorities take effect where requests wait: in the {@link RateLimiter}.
+ * Each priority has its own queue, and when requests of several priorities
+ * are waiting, the queues share the allowed rate by weight. A queue is never
+ * starved, and a queue that is empty leaves its share to the others.
+ *
+ * @see RateLimiter#setReservedShare(double)
+ * @see RateLimiter#setMaxWait(Priority, long)
+ */
+public enum Priority {
+    /** Work that a person is waiting on. It gets 8 shares of the rate. */
+    INTERACTIVE(8),
+    /** The priority of operations that do not name one. It gets 3 shares. */
+    STANDARD(3),
+    /** Background work, such as translating documents. It gets 1 share. */
+    BULK(1);
+
+    final int weight;
+
+    Priority(int weight) {
+        this.weight = weight;
+    }
+}
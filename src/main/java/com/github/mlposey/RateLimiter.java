@@ -0,0 +1,446 @@
+package com.github.mlposey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Limits the rate at which a {@link Translator} sends requests.</p>
+ *
+ * A RateLimiter is a pair of token buckets: one for requests and one for
+ * characters of text. Requests that would exceed either budget wait until
+ * enough tokens are available. No thread is blocked while a request waits.
+ *
+ * <p>Requests of each {@link Priority} wait in their own queue, in order, and
+ * the queues share the allowed rate by weight. Part of each bucket can be
+ * reserved for interactive requests, and requests of a priority can be given
+ * a longest wait, beyond which they are shed instead of queued. By default
+ * nothing is reserved and requests are never failed.</p>
+ *
+ * <p>When the service reports that a quota was exceeded, the allowed rate is
+ * halved. It then grows back by a tenth of the configured rate for every second
+ * of successful requests. Service quotas usually apply to an API key, so one
+ * RateLimiter should be shared by all Translators that use the same {@link Key}.</p>
+ *
+ * @see Translator#setRateLimiter(RateLimiter)
+ */
+public class RateLimiter {
+    // The smallest fraction of the configured rate that is allowed
+    private static final double minRate = 1.0 / 64;
+
+    private final double requestsPerSecond;
+    private final double charsPerSecond;
+
+    // The fraction of the configured rate that is currently allowed
+    private double rate = 1;
+    private long lastRateChange = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+
+    private double requestTokens;
+    private double charTokens;
+    private long lastRefill = System.nanoTime();
+
+    // The waiting requests of each priority, with Priority.INTERACTIVE first
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    // The pass of the lane that was served last
+    private double virtualTime;
+    private double reservedShare;
+    // The time that a timer will call release at, if one is scheduled
+    private long wakeupAt;
+    private boolean isWakeupScheduled;
+    // The waiters that have a deadline, soonest first. Waiters that left
+    // their queue are dropped once they reach the head.
+    private final PriorityQueue<Waiter> deadlines =
+            new PriorityQueue<>(Comparator.comparingLong(waiter -> waiter.deadline));
+    // The deadline that a timer will shed waiters at, if one is scheduled
+    private long expiryAt;
+    private boolean isExpiryScheduled;
+
+    /**
+     * Constructs a RateLimiter object.
+     *
+     * @param requestsPerSecond the most requests to send per second
+     * @param charsPerSecond the most characters of text to send per second, or
+     *                       {@link Double#POSITIVE_INFINITY} for no limit
+     */
+    public RateLimiter(double requestsPerSecond, double charsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.charsPerSecond = charsPerSecond;
+        requestTokens = requestsPerSecond;
+        charTokens = charsPerSecond;
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] = new Lane(priority.weight);
+        }
+    }
+
+    /** Returns the number of requests per second that are currently allowed. */
+    public synchronized double getRequestRate() { return requestsPerSecond * rate; }
+
+    /** Returns the number of requests that are waiting for tokens. */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (Lane lane : lanes) { count += lane.waiters.size(); }
+        return count;
+    }
+
+    /** Returns the number of requests of a priority that are waiting for tokens. */
+    public synchronized int getQueuedCount(Priority priority) {
+        return lanes[priority.ordinal()].waiters.size();
+    }
+
+    /**
+     * Sets the share of each bucket that only {@link Priority#INTERACTIVE}
+     * requests may use. Other requests leave that many tokens in the buckets,
+     * so interactive requests are not stuck behind a backlog of bulk work.
+     * The default is 0.
+     *
+     * @param share a fraction of the buckets from 0 (inclusive) to 1 (exclusive)
+     * @throws IllegalArgumentException if 'share' is outside of that range
+     */
+    public synchronized void setReservedShare(double share) {
+        if (share < 0 || share >= 1) {
+            throw new IllegalArgumentException("The reserved share must be in [0, 1)");
+        }
+        reservedShare = share;
+    }
+
+    /**
+     * Sets how long requests of a priority may wait for tokens. A request
+     * that is expected to wait longer fails right away with
+     * {@link TranslationError#SHED}, and one that has waited longer fails
+     * then, even if requests ahead of it are still waiting. By default
+     * requests wait without limit.
+     *
+     * @param priority the priority of the requests
+     * @param millis the most milliseconds to wait, or -1 for no limit
+     */
+    public synchronized void setMaxWait(Priority priority, long millis) {
+        lanes[priority.ordinal()].maxWait = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Reserves tokens for one request of {@link Priority#STANDARD} priority.
+     *
+     * @param chars the number of characters the request sends
+     * @return a future that completes when the request may be sent
+     */
+    public CompletableFuture<Void> acquire(int chars) {
+        return acquire(chars, Priority.STANDARD);
+    }
+
+    /**
+     * Reserves tokens for one request.
+     *
+     * @param chars the number of characters the request sends
+     * @param priority the priority of the request
+     * @return a future that completes when the request may be sent, or fails
+     *         with {@link TranslationError#SHED} if the request waits too long
+     */
+    public CompletableFuture<Void> acquire(int chars, Priority priority) {
+        return acquire(chars, priority, -1);
+    }
+
+    /**
+     * Reserves tokens for one request whose caller waits a limited time. A
+     * request that is expected to wait longer than 'timeoutMillis', or that
+     * has waited that long, fails with {@link TranslationError#TIMEOUT}.
+     * Cancelling the returned future gives up the request's place in the queue.
+     *
+     * @param chars the number of characters the request sends
+     * @param priority the priority of the request
+     * @param timeoutMillis the most milliseconds to wait, or -1 for no limit
+     * @return a future that completes when the request may be sent
+     */
+    public CompletableFuture<Void> acquire(int chars, Priority priority, long timeoutMillis) {
+        Lane lane = lanes[priority.ordinal()];
+        Waiter waiter = new Waiter(chars, lane);
+        synchronized (this) {
+            long maxWait = lane.maxWait;
+            int code = TranslationError.SHED;
+            if (timeoutMillis >= 0 &&
+                    (maxWait < 0 || TimeUnit.MILLISECONDS.toNanos(timeoutMillis) < maxWait)) {
+                maxWait = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                code = TranslationError.TIMEOUT;
+            }
+            if (maxWait >= 0) {
+                long now = System.nanoTime();
+                refill(now);
+                if (estimateWait(lane, chars) > maxWait) {
+                    return CompletableFuture.failedFuture(new TranslationError(code));
+                }
+                waiter.deadline = now + maxWait;
+                waiter.hasDeadline = true;
+                waiter.code = code;
+                deadlines.add(waiter);
+            }
+            // A lane that was idle does not save up turns.
+            if (lane.waiters.isEmpty()) { lane.pass = Math.max(lane.pass, virtualTime); }
+            lane.waiters.add(waiter);
+            lane.queuedChars += chars;
+            waiter.isQueued = true;
+        }
+        waiter.ready.whenComplete((ready, ex) -> {
+            if (waiter.ready.isCancelled()) {
+                remove(waiter);
+                // The waiter may have been holding up the ones behind it.
+                release();
+            }
+        });
+        release();
+        return waiter.ready;
+    }
+
+    /** Removes a waiter that was cancelled from its queue. */
+    private synchronized void remove(Waiter waiter) {
+        if (waiter.isQueued) { waiter.lane.remove(waiter); }
+    }
+
+    /** Returns the tokens of a waiter that was cancelled after it was let through. */
+    private synchronized void refund(Waiter waiter) {
+        requestTokens = Math.min(requestsPerSecond * rate, requestTokens + 1);
+        charTokens = Math.min(charsPerSecond * rate, charTokens + waiter.chars);
+    }
+
+    /** Records that the service reported an exceeded quota. */
+    synchronized void recordQuotaError() {
+        // Many requests fail at once when a quota is hit, but the rate should
+        // only be cut once for them.
+        long now = System.nanoTime();
+        if (now - lastRateChange < TimeUnit.SECONDS.toNanos(1)) { return; }
+
+        refill(now);
+        rate = Math.max(minRate, rate / 2);
+        requestTokens = Math.min(requestTokens, requestsPerSecond * rate);
+        charTokens = Math.min(charTokens, charsPerSecond * rate);
+        lastRateChange = now;
+    }
+
+    /** Records that a request succeeded. */
+    synchronized void recordSuccess() {
+        long now = System.nanoTime();
+        if (rate < 1 && now - lastRateChange >= TimeUnit.SECONDS.toNanos(1)) {
+            refill(now);
+            rate = Math.min(1, rate + 0.1);
+            lastRateChange = now;
+        }
+    }
+
+    /**
+     * Lets waiting requests proceed while there are enough tokens.
+     *
+     * <p>The lanes take turns by weight: each lane has a pass that grows by
+     * 1 / weight for every request it sends, and the waiting lane with the
+     * lowest pass goes next.</p>
+     */
+    private void release() {
+        List<Waiter> ready = new ArrayList<>();
+        List<Waiter> shed = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            // Waiters are shed wherever they are in their queue.
+            while (!deadlines.isEmpty() && (!deadlines.peek().isQueued ||
+                    deadlines.peek().isExpired(now))) {
+                Waiter waiter = deadlines.poll();
+                if (waiter.isQueued) {
+                    waiter.lane.remove(waiter);
+                    if (!waiter.ready.isDone()) { shed.add(waiter); }
+                }
+            }
+            if (!deadlines.isEmpty()) { scheduleExpiry(deadlines.peek().deadline, now); }
+            for (Lane lane : lanes) {
+                while (!lane.waiters.isEmpty() && lane.waiters.peek().ready.isDone()) {
+                    lane.poll();
+                }
+            }
+
+            while (true) {
+                Lane lane = null;
+                for (Lane candidate : lanes) {
+                    if (!candidate.waiters.isEmpty() &&
+                            (lane == null || candidate.pass < lane.pass)) {
+                        lane = candidate;
+                    }
+                }
+                if (lane == null) { break; }
+
+                double delay = delay(lane, lane.waiters.peek());
+                // Reserved tokens are still open to interactive requests.
+                Lane top = lanes[0];
+                if (delay > 0 && lane != top && !top.waiters.isEmpty() &&
+                        delay(top, top.waiters.peek()) <= 0) {
+                    lane = top;
+                    delay = 0;
+                }
+                if (delay > 0) {
+                    scheduleWakeup(delay);
+                    break;
+                }
+
+                Waiter waiter = lane.poll();
+                requestTokens -= 1;
+                charTokens -= waiter.chars;
+                virtualTime = lane.pass;
+                lane.pass += 1.0 / lane.weight;
+                ready.add(waiter);
+            }
+        }
+
+        // Waiters are completed outside the lock because completing one starts
+        // its request.
+        for (Waiter waiter : shed) {
+            waiter.ready.completeExceptionally(new TranslationError(waiter.code));
+        }
+        boolean isRefunded = false;
+        for (Waiter waiter : ready) {
+            if (!waiter.ready.complete(null)) {
+                refund(waiter);
+                isRefunded = true;
+            }
+        }
+        if (isRefunded) { release(); }
+    }
+
+    /**
+     * Returns the number of seconds until there are enough tokens for a
+     * request in 'lane', or a number that is not positive if there are now.
+     */
+    private double delay(Lane lane, Waiter waiter) {
+        boolean isTop = lane == lanes[0];
+        double requestCapacity = requestsPerSecond * rate;
+        double requests = Math.min(requestCapacity,
+                (isTop ? 0 : reservedShare * requestCapacity) + 1);
+        double seconds = (requests - requestTokens) / requestCapacity;
+        if (!Double.isInfinite(charsPerSecond)) {
+            // A request larger than the bucket may go once the bucket is full.
+            double charCapacity = charsPerSecond * rate;
+            double chars = Math.min(charCapacity,
+                    (isTop ? 0 : reservedShare * charCapacity) + waiter.chars);
+            seconds = Math.max(seconds, (chars - charTokens) / charCapacity);
+        }
+        return seconds;
+    }
+
+    /**
+     * Estimates how many nanoseconds a new request in 'lane' would wait,
+     * assuming the lane keeps its share of the rate.
+     */
+    private double estimateWait(Lane lane, int chars) {
+        int weights = lane.weight;
+        for (Lane other : lanes) {
+            if (other != lane && !other.waiters.isEmpty()) { weights += other.weight; }
+        }
+        double share = (double) lane.weight / weights;
+
+        double reserved = lane == lanes[0] ? 0 : reservedShare;
+        double requestCapacity = requestsPerSecond * rate;
+        double requests = lane.waiters.size() + 1 + reserved * requestCapacity - requestTokens;
+        double seconds = requests / (requestCapacity * share);
+        if (!Double.isInfinite(charsPerSecond)) {
+            double charCapacity = charsPerSecond * rate;
+            double needed = lane.queuedChars + Math.min(chars, charCapacity)
+                    + reserved * charCapacity - charTokens;
+            seconds = Math.max(seconds, needed / (charCapacity * share));
+        }
+        return Math.max(0, seconds) * 1e9;
+    }
+
+    private void refill(long now) {
+        double seconds = (now - lastRefill) / 1e9;
+        lastRefill = now;
+
+        requestTokens = Math.min(requestsPerSecond * rate,
+                requestTokens + seconds * requestsPerSecond * rate);
+        if (Double.isInfinite(charsPerSecond)) {
+            charTokens = charsPerSecond;
+        } else {
+            charTokens = Math.min(charsPerSecond * rate,
+                    charTokens + seconds * charsPerSecond * rate);
+        }
+    }
+
+    /**
+     * Calls release after 'seconds', when there should be enough tokens. A
+     * wakeup that is already scheduled is kept unless this one is sooner,
+     * which happens when the waiter it was for is cancelled.
+     */
+    private void scheduleWakeup(double seconds) {
+        long delay = Math.max(1000, (long) (seconds * 1e9));
+        long at = System.nanoTime() + delay;
+        if (isWakeupScheduled && wakeupAt - at <= 0) { return; }
+        isWakeupScheduled = true;
+        wakeupAt = at;
+
+        Translator.scheduler.schedule(() -> {
+            synchronized (this) {
+                if (wakeupAt == at) { isWakeupScheduled = false; }
+            }
+            release();
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /** Calls release at 'deadline', when the soonest waiter expires. */
+    private void scheduleExpiry(long deadline, long now) {
+        if (isExpiryScheduled && expiryAt - deadline <= 0) { return; }
+        isExpiryScheduled = true;
+        expiryAt = deadline;
+
+        Translator.scheduler.schedule(() -> {
+            synchronized (this) {
+                if (expiryAt == deadline) { isExpiryScheduled = false; }
+            }
+            release();
+        }, Math.max(1, deadline - now), TimeUnit.NANOSECONDS);
+    }
+
+    /** The waiting requests of one priority. */
+    private static class Lane {
+        final int weight;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        long queuedChars;
+        double pass;
+        // The most nanoseconds a request may wait, or -1 for no limit
+        long maxWait = -1;
+
+        Lane(int weight) { this.weight = weight; }
+
+        Waiter poll() {
+            Waiter waiter = waiters.poll();
+            queuedChars -= waiter.chars;
+            waiter.isQueued = false;
+            return waiter;
+        }
+
+        void remove(Waiter waiter) {
+            waiters.remove(waiter);
+            queuedChars -= waiter.chars;
+            waiter.isQueued = false;
+        }
+    }
+
+    /** A request that is waiting for tokens. */
+    private static class Waiter {
+        final int chars;
+        final Lane lane;
+        final CompletableFuture<Void> ready = new CompletableFuture<>();
+        // A time from System.nanoTime() after which the request is shed, if
+        // it has a limit
+        long deadline;
+        boolean hasDeadline;
+        // The code the request fails with once its deadline passes
+        int code;
+        // True while the request is in its lane's queue
+        boolean isQueued;
+
+        Waiter(int chars, Lane lane) {
+            this.chars = chars;
+            this.lane = lane;
+        }
+
+        boolean isExpired(long now) { return hasDeadline && now - deadline > 0; }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.mlposey;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Decides whether and when a {@link Translator} resends a failed request.</p>
+ *
+ * Failed requests with a retryable code are resent after a random delay
+ * between zero and an exponentially growing cap (i.e., full jitter). If the
+ * service sends a Retry-After header, the delay is at least that long.
+ *
+ * <p>Retries are limited by a budget so that they cannot multiply the load on
+ * a service that is already failing. Every request adds a fraction of a token
+ * to the budget, and every retry takes a whole token.</p>
+ *
+ * @see Translator#setRetryPolicy(RetryPolicy)
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    private final double budgetRatio;
+    private final double maxBudget;
+    private double budget;
+
+    /**
+     * Constructs a RetryPolicy object that sends each request at most three
+     * times, waits between 100 milliseconds and 10 seconds, and retries at
+     * most one request in ten once its reserve of ten retries is spent.
+     */
+    public RetryPolicy() {
+        this(3, 100, 10000, 0.1, 10);
+    }
+
+    /**
+     * Constructs a RetryPolicy object.
+     *
+     * @param maxAttempts the most times a request is sent, including the first
+     * @param baseDelay the cap in milliseconds on the delay before the first retry.
+     *                  The cap doubles for each later retry.
+     * @param maxDelay the largest delay in milliseconds. Requests the service
+     *                 asks to delay for longer are not retried.
+     * @param budgetRatio the number of retries each request adds to the budget
+     * @param maxBudget the most retries the budget can hold
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay,
+                       double budgetRatio, double maxBudget) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+        budget = maxBudget;
+    }
+
+    /**
+     * Returns true if a request that failed with 'code' may succeed if it is
+     * sent again.
+     *
+     * <p>By default, network errors, rate limits (429), and server errors
+     * (500, 502, 503, and 504) are retryable.</p>
+     */
+    protected boolean isRetryable(int code) {
+        switch (code) {
+            case TranslationError.NETWORK_ERROR:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Adds a new request's share to the retry budget. */
+    synchronized void recordRequest() {
+        budget = Math.min(maxBudget, budget + budgetRatio);
+    }
+
+    /**
+     * Returns the delay in milliseconds before a failed request is resent.
+     *
+     * @param attempt the number of times the request has been sent
+     * @param code the code of the failure
+     * @param retryAfter the delay in milliseconds that the service asked for,
+     *                   or -1 if it did not ask for one
+     * @return the delay, or -1 if the request should not be resent
+     */
+    synchronized long nextDelay(int attempt, int code, long retryAfter) {
+        if (attempt >= maxAttempts || !isRetryable(code) || retryAfter > maxDelay
+                || budget < 1) {
+            return -1;
+        }
+        budget -= 1;
+
+        long cap = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        long backoff = ThreadLocalRandom.current().nextLong(cap + 1);
+        return Math.max(backoff, retryAfter);
+    }
+
+    /**
+     * Converts the value of a Retry-After header to milliseconds.
+     *
+     * @param value a number of seconds or an HTTP date, or null
+     * @return the delay, or -1 if value is null or malformed
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null) { return -1; }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // The header may also hold a date.
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.github.mlposey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * <p>A {@link Translator} that sends each request to the fastest of several
+ * other Translators.</p>
+ *
+ * For every Translator and {@link Operation}, a RoutingTranslator keeps a
+ * moving average of the latency and error rate of recent requests. Requests
+ * go first to the Translator with the lowest expected latency, counting the
+ * time spent on requests that fail. Translators that do not support a
+ * translation direction are skipped once their directions are known, which
+ * each starts loading on the first call that is routed to it.
+ *
+ * A Translator whose latency is not known yet is expected to take two
+ * seconds, so that one which has only failed is not mistaken for a fast one.
+ *
+ * <p>If a request fails, it is sent to the next Translator. If it is still
+ * running after the failover delay, it is also sent to the next Translator;
+ * the first result is used and the other request is aborted.</p>
+ *
+ * <pre>
+ * Translator translator = new RoutingTranslator(Arrays.asList(
+ *         Translators.get(Key.GOOGLE), Translators.get(Key.YANDEX)));
+ * </pre>
+ */
+public class RoutingTranslator extends Translator {
+    // The weight of the newest sample in the moving averages
+    private static final double alpha = 0.2;
+    // The time in nanoseconds after which a past error counts half as much
+    private static final long errorHalfLife = TimeUnit.SECONDS.toNanos(30);
+    // The cost in nanoseconds of a failed request, which must be sent again
+    private static final double errorPenalty = TimeUnit.SECONDS.toNanos(1);
+    // The latency in nanoseconds expected of a Translator until one of its
+    // requests succeeds
+    private static final double latencyPrior = TimeUnit.SECONDS.toNanos(2);
+
+    private final List<Translator> translators;
+    private final Stats[][] stats;
+
+    private volatile long failoverDelay = 2000;
+
+    /**
+     * Constructs a RoutingTranslator object that shares the executor and
+     * Transport of the first Translator.
+     *
+     * @param translators the Translators that requests are sent to. The first
+     *                    is preferred until latencies are known.
+     */
+    public RoutingTranslator(final List<Translator> translators) {
+        super(translators.get(0).getApiKey(), translators.get(0).getHost(),
+                translators.get(0).getTransport(), translators.get(0).getExecutor());
+        this.translators = new ArrayList<>(translators);
+
+        stats = new Stats[translators.size()][Operation.values().length];
+        for (Stats[] operations : stats) {
+            for (int i = 0; i < operations.length; i++) {
+                operations[i] = new Stats();
+            }
+        }
+    }
+
+    /**
+     * Sets how long a request may run before it is also sent to the next
+     * Translator.
+     *
+     * @param delay the time in milliseconds, or 0 to only fail over on errors
+     */
+    public final void setFailoverDelay(long delay) {
+        failoverDelay = delay;
+    }
+
+    @Override
+    protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+        return route(Operation.TRANSLATE,
+                translator -> !translator.isKnownUnsupported(from, to),
+                translator -> translator.translateImpl(from, to));
+    }
+
+    @Override
+    protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+        return route(Operation.TRANSLATE,
+                translator -> from.stream().noneMatch(
+                        text -> translator.isKnownUnsupported(text, to)),
+                translator -> translator.translateBatchImpl(from, to));
+    }
+
+    @Override
+    protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+        return route(Operation.IDENTIFY, translator -> true,
+                translator -> translator.identifyImpl(mysteryText));
+    }
+
+    @Override
+    protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+        return route(Operation.IDENTIFY, translator -> true,
+                translator -> translator.identifyBatchImpl(mysteryTexts));
+    }
+
+    @Override
+    protected CompletableFuture<Boolean> hasSupportImpl(Language from, Language to) {
+        return getSupport().thenCompose(matrix -> matrix != null ?
+                CompletableFuture.completedFuture(matrix.isSupported(from, to)) :
+                route(Operation.HAS_SUPPORT, translator -> true,
+                        translator -> translator.hasSupportImpl(from, to)));
+    }
+
+    /** Returns the directions that any of the Translators support. */
+    @Override
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        List<CompletableFuture<SupportMatrix>> loads = new ArrayList<>();
+        for (Translator translator : translators) {
+            loads.add(translator.getSupport());
+        }
+
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    SupportMatrix union = new SupportMatrix();
+                    for (CompletableFuture<SupportMatrix> load : loads) {
+                        // If any Translator cannot list its directions, neither can this.
+                        if (load.join() == null) { return null; }
+                        union.merge(load.join());
+                    }
+                    return union;
+                });
+    }
+
+    /** Returns the smallest limit of the Translators, since any may get a request. */
+    @Override
+    public int getMaxRequestChars() {
+        int limit = Integer.MAX_VALUE;
+        for (Translator translator : translators) {
+            limit = Math.min(limit, translator.getMaxRequestChars());
+        }
+        return limit;
+    }
+
+    /**
+     * Sends a request to the Translators that 'supports' accepts, in order of
+     * their expected latency.
+     */
+    private <T> CompletableFuture<T> route(Operation operation,
+                                           Predicate<Translator> supports,
+                                           Function<Translator, CompletableFuture<T>> call) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < translators.size(); i++) {
+            if (supports.test(translators.get(i))) { candidates.add(i); }
+        }
+        if (candidates.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new TranslationError(TranslationError.UNSUPPORTED_DIRECTION));
+        }
+
+        long now = System.nanoTime();
+        candidates.sort(Comparator.comparingDouble(
+                i -> stats[i][operation.ordinal()].expectedLatency(now)));
+
+        Route<T> route = new Route<>(operation, currentContext(), candidates, call);
+        route.sendNext();
+        return route.result;
+    }
+
+    /** A request and the Translators it may still be sent to. */
+    private class Route<T> {
+        final Operation operation;
+        final CallContext context;
+        final List<Integer> candidates;
+        final Function<Translator, CompletableFuture<T>> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        // The index of the next candidate and the number of running requests
+        int next;
+        int running;
+        // The context of each request that was sent, which aborts it
+        final List<CallContext> attempts = new ArrayList<>();
+
+        Route(Operation operation, CallContext context, List<Integer> candidates,
+              Function<Translator, CompletableFuture<T>> call) {
+            this.operation = operation;
+            this.context = context;
+            this.candidates = candidates;
+            this.call = call;
+        }
+
+        void sendNext() {
+            final int index;
+            final boolean hasNext;
+            // Each request can be aborted on its own, and is aborted with the call.
+            CallContext attempt = context.copy();
+            synchronized (this) {
+                if (result.isDone() || next == candidates.size()) { return; }
+                index = candidates.get(next++);
+                hasNext = next < candidates.size();
+                running++;
+                attempts.add(attempt);
+            }
+            context.onCancel(() -> attempt.cancel(context.getCode()));
+
+            long start = System.nanoTime();
+            // Each Translator's circuit breaker fails the call at once if it is
+            // open, so the request moves on to the next Translator. A request
+            // sent by the failover timer still belongs to the call.
+            Translator translator = translators.get(index);
+            CompletableFuture<T> response;
+            try {
+                response = within(attempt,
+                        () -> translator.guarded(operation, () -> call.apply(translator)));
+            } catch (Throwable e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+
+            response.whenComplete((value, ex) -> {
+                // A request that lost to another says nothing about its Translator.
+                if (!attempt.isCancelled()) {
+                    stats[index][operation.ordinal()].record(System.nanoTime() - start,
+                            ex == null);
+                }
+                if (ex == null) {
+                    if (result.complete(value)) { abortOthers(attempt); }
+                    return;
+                }
+
+                boolean isLast;
+                synchronized (this) {
+                    isLast = --running == 0 && next == candidates.size();
+                }
+                if (isLast) {
+                    result.completeExceptionally(unwrap(ex));
+                } else {
+                    sendNext();
+                }
+            });
+
+            long delay = failoverDelay;
+            if (hasNext && delay > 0 && !result.isDone()) {
+                scheduler.schedule(this::sendNext, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /** Aborts the requests that are still running besides 'winner'. */
+        private void abortOthers(CallContext winner) {
+            List<CallContext> others;
+            synchronized (this) { others = new ArrayList<>(attempts); }
+            for (CallContext other : others) {
+                if (other != winner) { other.cancel(TranslationError.CANCELLED); }
+            }
+        }
+    }
+
+    /** Moving averages for one Translator and operation. */
+    private static class Stats {
+        // The average latency of successful requests in nanoseconds, or the
+        // prior if none have succeeded
+        double latency = latencyPrior;
+        boolean isMeasured;
+        double errorRate;
+        long updated = System.nanoTime();
+
+        synchronized void record(long nanos, boolean isSuccess) {
+            long now = System.nanoTime();
+            errorRate = alpha * (isSuccess ? 0 : 1) + (1 - alpha) * decayedErrorRate(now);
+            updated = now;
+
+            // Failures are often fast, so they would make a Translator look quick.
+            if (isSuccess) {
+                latency = isMeasured ? alpha * nanos + (1 - alpha) * latency : nanos;
+                isMeasured = true;
+            }
+        }
+
+        /**
+         * Returns the average time to get a successful response, counting
+         * requests that fail and must be resent.
+         */
+        synchronized double expectedLatency(long now) {
+            double errors = Math.min(0.99, decayedErrorRate(now));
+            return latency / (1 - errors) + errors * errorPenalty;
+        }
+
+        /** Returns the error rate, discounted so a Translator can recover. */
+        private double decayedErrorRate(long now) {
+            return errorRate * Math.pow(0.5, (double) (now - updated) / errorHalfLife);
+        }
+    }
+}
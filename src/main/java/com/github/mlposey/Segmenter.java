@@ -0,0 +1,172 @@
+package com.github.mlposey;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Splits the text of a Reader into segments that can be translated alone.</p>
+ *
+ * Each segment is a paragraph if it fits in the maximum size. Longer
+ * paragraphs are split at the last sentence or line end that fits, then at the
+ * last space, and only then in the middle of a word. The whitespace between
+ * segments is kept apart from them so that it can be written back unchanged.
+ *
+ * <p>At most about twice the maximum size is held in memory.</p>
+ */
+final class Segmenter {
+    /** A piece of text and the whitespace that follows it. */
+    static final class Segment {
+        final String text;
+        final String separator;
+
+        Segment(String text, String separator) {
+            this.text = text;
+            this.separator = separator;
+        }
+    }
+
+    private final Reader reader;
+    private final int maxChars;
+    private final char[] buffer = new char[4096];
+
+    // Characters that have been read, starting at 'start'
+    private final StringBuilder pending = new StringBuilder();
+    private int start;
+    private boolean isEnd;
+
+    /**
+     * Constructs a Segmenter object.
+     *
+     * @param reader the source of the text
+     * @param maxChars the most characters in a segment, not counting separators
+     */
+    Segmenter(Reader reader, int maxChars) {
+        this.reader = reader;
+        this.maxChars = maxChars;
+    }
+
+    /** Splits a string into segments of at most 'maxChars' characters. */
+    static List<Segment> split(String text, int maxChars) {
+        Segmenter segmenter = new Segmenter(new StringReader(text), maxChars);
+        List<Segment> segments = new ArrayList<>();
+        try {
+            Segment segment;
+            while ((segment = segmenter.next()) != null) {
+                segments.add(segment);
+            }
+        } catch (IOException e) {
+            // A StringReader does not throw.
+            throw new UncheckedIOException(e);
+        }
+        return segments;
+    }
+
+    /** Returns the next segment, or null if the text has been read. */
+    Segment next() throws IOException {
+        fill();
+        if (start == pending.length()) { return null; }
+
+        // Only whitespace at the start of the text has no segment before it.
+        int end = Character.isWhitespace(pending.charAt(start)) ? start : boundary();
+        while (end > start && Character.isWhitespace(pending.charAt(end - 1))) {
+            end--;
+        }
+        String text = pending.substring(start, end);
+        start = end;
+        return new Segment(text, whitespace());
+    }
+
+    /** Returns the index at which the segment that begins at 'start' ends. */
+    private int boundary() {
+        int limit = start + Math.min(pending.length() - start, maxChars);
+        int sentence = -1;
+        int line = -1;
+        int space = -1;
+        for (int i = start + 1; i < limit; i++) {
+            char c = pending.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                // Chinese and Japanese sentences are not followed by spaces.
+                if (isWideTerminator(pending.charAt(i - 1))) { sentence = i; }
+                continue;
+            }
+            if (c == '\n' && isParagraphBreak(i)) { return i; }
+            if (c == '\n') { line = i; }
+            if (endsSentence(i)) { sentence = i; }
+            space = i;
+        }
+
+        if (isEnd && limit == pending.length()) { return limit; }
+        if (Math.max(sentence, line) > start) { return Math.max(sentence, line); }
+        if (space > start) { return space; }
+        // A segment must not end between the halves of a surrogate pair.
+        return Character.isHighSurrogate(pending.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+
+    /** Returns true if the line break at 'index' is followed by a blank line. */
+    private boolean isParagraphBreak(int index) {
+        for (int i = index + 1; i < pending.length(); i++) {
+            char c = pending.charAt(i);
+            if (c == '\n') { return true; }
+            if (c != ' ' && c != '\t' && c != '\r') { return false; }
+        }
+        return false;
+    }
+
+    /** Returns true if the whitespace at 'index' follows the end of a sentence. */
+    private boolean endsSentence(int index) {
+        int i = index - 1;
+        // Closing quotes and brackets may follow the punctuation.
+        while (i > start && "\"')]}\u00bb\u201d\u2019".indexOf(pending.charAt(i)) >= 0) {
+            i--;
+        }
+        char c = pending.charAt(i);
+        return c == '.' || c == '!' || c == '?' || c == '\u2026' || isWideTerminator(c);
+    }
+
+    private static boolean isWideTerminator(char c) {
+        return c == '\u3002' || c == '\uff01' || c == '\uff1f';
+    }
+
+    /** Consumes the whitespace at 'start' and returns it. */
+    private String whitespace() throws IOException {
+        int end = start;
+        StringBuilder separator = null;
+        while (true) {
+            while (end < pending.length() && Character.isWhitespace(pending.charAt(end))) {
+                end++;
+            }
+            if (end < pending.length() || isEnd) { break; }
+
+            // The whitespace may continue past what has been read.
+            if (separator == null) { separator = new StringBuilder(); }
+            separator.append(pending, start, end);
+            start = end;
+            fill();
+            end = start;
+        }
+
+        String rest = pending.substring(start, end);
+        start = end;
+        return separator == null ? rest : separator.append(rest).toString();
+    }
+
+    /** Reads until more than one segment's worth of text is pending. */
+    private void fill() throws IOException {
+        if (start > 0 && start >= pending.length() / 2) {
+            pending.delete(0, start);
+            start = 0;
+        }
+        while (!isEnd && pending.length() - start <= maxChars) {
+            int count = reader.read(buffer);
+            if (count < 0) {
+                isEnd = true;
+            } else {
+                pending.append(buffer, 0, count);
+            }
+        }
+    }
+}
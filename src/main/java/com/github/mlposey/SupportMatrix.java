@@ -0,0 +1,51 @@
+package com.github.mlposey;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * <p>The set of translation directions (e.g., en-ru) that a service supports.</p>
+ *
+ * A SupportMatrix holds one bit for each pair of {@link Language} values, so
+ * checking a direction never requires a request to the service. Directions are
+ * added while the matrix is built and it should not be changed afterwards.
+ *
+ * @see Translator#getSupport()
+ */
+public final class SupportMatrix {
+    private static final int size = Language.values().length;
+
+    private final BitSet directions = new BitSet(size * size);
+    private final BitSet targets = new BitSet(size);
+
+    /** Adds support for translating from one language to another. */
+    public void add(final Language from, final Language to) {
+        directions.set(from.ordinal() * size + to.ordinal());
+        targets.set(to.ordinal());
+    }
+
+    /** Adds support for translating between every pair of languages. */
+    public void addAll(Collection<Language> languages) {
+        for (Language from : languages) {
+            for (Language to : languages) {
+                add(from, to);
+            }
+        }
+    }
+
+    /** Adds every direction that 'other' supports. */
+    public void merge(final SupportMatrix other) {
+        directions.or(other.directions);
+        targets.or(other.targets);
+    }
+
+    /** Returns true if text can be translated from one language to another. */
+    public boolean isSupported(final Language from, final Language to) {
+        return directions.get(from.ordinal() * size + to.ordinal());
+    }
+
+    /** Returns true if text in some language can be translated to 'to'. */
+    public boolean isTarget(final Language to) {
+        return targets.get(to.ordinal());
+    }
+}
@@ -7,6 +7,61 @@ package com.github.mlposey;
  * of this type.
  */
 public class TranslationError extends Error {
+    /**
+     * The code for a translation direction that the service does not support.
+     * It matches the code Yandex.Translate uses, and it is also used when a
+     * {@link Translator} rejects a direction without contacting the service.
+     */
+    public static final int UNSUPPORTED_DIRECTION = 501;
+
+    /**
+     * The code for a request that could not reach the service (e.g., because
+     * the connection failed). Codes below zero are generated by the kit rather
+     * than by a service.
+     */
+    public static final int NETWORK_ERROR = -1;
+
+    /**
+     * The code for an operation whose result could not be delivered because
+     * the {@link Translator}'s executor did not accept more work.
+     */
+    public static final int REJECTED = -2;
+
+    /**
+     * The code for a request that was not sent because the {@link CircuitBreaker}
+     * for its operation is open.
+     */
+    public static final int CIRCUIT_OPEN = -3;
+
+    /**
+     * The code for an operation that failed because of an exception that was
+     * not a TranslationError (e.g., a bug in a {@link Transport}). The
+     * exception is the error's cause.
+     */
+    public static final int UNEXPECTED = -4;
+
+    /**
+     * The code for a request that was not sent because it would have waited
+     * in the {@link RateLimiter} longer than its {@link Priority} allows.
+     * Shedding is a sign of overload, so the request is not retried.
+     */
+    public static final int SHED = -5;
+
+    /**
+     * The code for an operation that did not finish before its deadline. Its
+     * requests are aborted.
+     *
+     * @see Translator#setTimeout(long)
+     */
+    public static final int TIMEOUT = -6;
+
+    /**
+     * The code for an operation that was abandoned before it finished, such
+     * as one that was still running when its {@link Translator} was shut down.
+     * Its requests are aborted.
+     */
+    public static final int CANCELLED = -7;
+
     private int code;
 
     /**
@@ -16,6 +71,17 @@ public class TranslationError extends Error {
      */
     public TranslationError(int code) { this.code = code; }
 
+    /**
+     * Creates a TranslationError object.
+     *
+     * @param code the response code generated by the translation service
+     * @param cause the problem that caused the error
+     */
+    public TranslationError(int code, Throwable cause) {
+        super(cause);
+        this.code = code;
+    }
+
     /** Returns the response code generated by the translation service. */
     public int getCode() { return code; }
 }
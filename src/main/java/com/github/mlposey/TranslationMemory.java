@@ -0,0 +1,294 @@
+package com.github.mlposey;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>A store of translations that is kept on disk.</p>
+ *
+ * <p>Translations are appended to a log of fixed-size segment files, and a
+ * hash index maps each request to its place in the log. Both are memory-mapped,
+ * so entries are read and written through the operating system's page cache
+ * rather than the Java heap. A TranslationMemory that is opened on an existing
+ * directory picks up every translation that was stored there before.</p>
+ *
+ * <p>The index has a fixed number of slots that is chosen when the directory is
+ * first used. Once it is nearly full, new translations are no longer stored.</p>
+ *
+ * @see PersistentTranslator
+ */
+public class TranslationMemory implements Closeable {
+    // The size of a log segment file. Entries never span two segments.
+    private static final int segmentSize = 1 << 26;
+    // The size of an index slot: an 8-byte hash followed by an 8-byte log offset
+    private static final int slotSize = 16;
+    // The most index slots that are mapped together
+    private static final int slotsPerMapping = 1 << 26;
+    // The most slots that are checked before giving up on a lookup
+    private static final int maxProbes = 1024;
+
+    private final Path directory;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer[] index;
+    private final long slotMask;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FileChannel> segmentChannels = new ArrayList<>();
+    private int writePosition;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Opens a TranslationMemory, creating it if the directory is empty.
+     *
+     * @param directory the directory that holds the log and index files
+     * @param capacity the number of translations the memory should be able to
+     *                 hold. This is ignored if the directory already has an index.
+     * @throws IOException if the files cannot be created or mapped
+     */
+    public TranslationMemory(Path directory, long capacity) throws IOException {
+        this.directory = Files.createDirectories(directory);
+
+        indexChannel = FileChannel.open(directory.resolve("index"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        // Half of the slots are kept empty so that probe sequences stay short.
+        long slots = indexChannel.size() / slotSize;
+        if (slots == 0) {
+            slots = Long.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        }
+        slotMask = slots - 1;
+
+        index = new MappedByteBuffer[(int) ((slots + slotsPerMapping - 1) / slotsPerMapping)];
+        for (int i = 0; i < index.length; i++) {
+            long size = Math.min(slots - (long) i * slotsPerMapping, slotsPerMapping);
+            index[i] = indexChannel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) i * slotsPerMapping * slotSize, size * slotSize);
+        }
+
+        while (Files.exists(segmentPath(segments.size()))) {
+            openSegment();
+        }
+        if (segments.isEmpty()) {
+            openSegment();
+        } else {
+            writePosition = findEnd(segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * Returns the stored translations of a text, or null if there are none.
+     *
+     * @param service the service that made the translation
+     * @param from the untranslated text
+     * @param to the language that 'from' was translated into
+     */
+    public Text[] get(final Key service, final Text from, final Language to) {
+        byte[] key = encodeKey(service, from, to);
+        long hash = hash(key);
+
+        lock.readLock().lock();
+        try {
+            for (long slot = hash & slotMask, probes = 0; probes < maxProbes;
+                 slot = (slot + 1) & slotMask, probes++) {
+                long slotHash = slotHash(slot);
+                if (slotHash == 0) { return null; }
+                if (slotHash == hash) {
+                    Text[] translations = read(slotOffset(slot), key, to);
+                    if (translations != null) { return translations; }
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the translations of a text.
+     *
+     * <p>Existing translations of the text are replaced. The translations are
+     * not stored if they are too large for a segment or the index is full.</p>
+     *
+     * @param service the service that made the translation
+     * @param from the untranslated text
+     * @param to the language that 'from' was translated into
+     * @param translations the possible translations of 'from'
+     * @throws IOException if a new segment file cannot be created
+     */
+    public void put(final Key service, final Text from, final Language to,
+                    Text[] translations) throws IOException {
+        byte[] key = encodeKey(service, from, to);
+        byte[][] values = new byte[translations.length][];
+        int size = 12 + key.length;
+        for (int i = 0; i < translations.length; i++) {
+            values[i] = translations[i].toString().getBytes(StandardCharsets.UTF_8);
+            size += 4 + values[i].length;
+        }
+        if (size > segmentSize) { return; }
+
+        long hash = hash(key);
+
+        lock.writeLock().lock();
+        try {
+            long slot = findSlot(hash, key, to);
+            if (slot < 0) { return; }
+
+            if (writePosition + size > segmentSize) {
+                openSegment();
+                writePosition = 0;
+            }
+
+            MappedByteBuffer segment = segments.get(segments.size() - 1);
+            long offset = (long) (segments.size() - 1) * segmentSize + writePosition;
+
+            segment.position(writePosition);
+            segment.putInt(key.length);
+            segment.put(key);
+            segment.putInt(size - 8 - key.length);
+            segment.putInt(values.length);
+            for (byte[] value : values) {
+                segment.putInt(value.length);
+                segment.put(value);
+            }
+            writePosition = segment.position();
+
+            // The hash is written last so that a slot never refers to an
+            // entry that was only partially written.
+            index(slot).putLong(slotPosition(slot) + 8, offset);
+            index(slot).putLong(slotPosition(slot), hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Writes all changes to the storage device and closes the files. */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer mapping : index) { mapping.force(); }
+            for (MappedByteBuffer segment : segments) { segment.force(); }
+
+            indexChannel.close();
+            for (FileChannel channel : segmentChannels) { channel.close(); }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the slot that the entry should be written to, or -1 if the
+     * index has no room for it.
+     */
+    private long findSlot(long hash, byte[] key, Language to) {
+        for (long slot = hash & slotMask, probes = 0; probes < maxProbes;
+             slot = (slot + 1) & slotMask, probes++) {
+            long slotHash = slotHash(slot);
+            if (slotHash == 0) { return slot; }
+            if (slotHash == hash && read(slotOffset(slot), key, to) != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the translations stored at a log offset.
+     *
+     * @return the translations, or null if the entry there is not for key
+     */
+    private Text[] read(long offset, byte[] key, Language to) {
+        int segmentIndex = (int) (offset / segmentSize);
+        if (segmentIndex >= segments.size()) { return null; }
+
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        int position = (int) (offset % segmentSize);
+
+        if (segment.getInt(position) != key.length) { return null; }
+        position += 4;
+        for (byte b : key) {
+            if (segment.get(position++) != b) { return null; }
+        }
+        position += 4;
+
+        Text[] translations = new Text[segment.getInt(position)];
+        position += 4;
+        for (int i = 0; i < translations.length; i++) {
+            byte[] value = new byte[segment.getInt(position)];
+            position += 4;
+            for (int j = 0; j < value.length; j++) {
+                value[j] = segment.get(position++);
+            }
+            translations[i] = new Text(new String(value, StandardCharsets.UTF_8), to);
+        }
+        return translations;
+    }
+
+    /** Returns the position after the last entry in a segment. */
+    private static int findEnd(MappedByteBuffer segment) {
+        // Keys are never empty, so a zero key length marks unused space.
+        int position = 0;
+        while (position + 4 <= segmentSize && segment.getInt(position) > 0) {
+            position += 4 + segment.getInt(position);
+            position += 4 + segment.getInt(position);
+        }
+        return position;
+    }
+
+    private void openSegment() throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segments.size()),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segmentChannels.add(channel);
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d", segment));
+    }
+
+    private MappedByteBuffer index(long slot) {
+        return index[(int) (slot / slotsPerMapping)];
+    }
+
+    private static int slotPosition(long slot) {
+        return (int) (slot % slotsPerMapping) * slotSize;
+    }
+
+    private long slotHash(long slot) {
+        return index(slot).getLong(slotPosition(slot));
+    }
+
+    private long slotOffset(long slot) {
+        return index(slot).getLong(slotPosition(slot) + 8);
+    }
+
+    private static byte[] encodeKey(final Key service, final Text from,
+                                    final Language to) {
+        return (service.name() + '\0' +
+                (from.isLanguageSet() ? from.getLanguage().concat(to) : to) + '\0' +
+                from).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns a 64-bit FNV-1a hash of key. The hash is never 0. */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.mlposey;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * <p>Publishes the results of an operation on each item of another publisher.</p>
+ *
+ * Items are only requested from upstream when the subscriber has asked for
+ * their results, and at most 'maxInFlight' of them are being processed or
+ * waiting to be delivered at once. Results are delivered in the order of
+ * their items, so a slow item holds back the ones after it.
+ *
+ * <p>The first failure is passed to the subscriber's onError and cancels the
+ * upstream subscription. That, or the subscriber cancelling, also cancels the
+ * results of the items in flight. Each subscriber gets its own upstream
+ * subscription.</p>
+ *
+ * @see Translator#translate(Flow.Publisher, Language, int)
+ * @see Translator#identify(Flow.Publisher, int)
+ */
+final class TranslationPublisher<T, R> implements Flow.Publisher<R> {
+    private final Flow.Publisher<T> upstream;
+    private final int maxInFlight;
+    private final Function<T, CompletableFuture<R>> operation;
+
+    /**
+     * Constructs a TranslationPublisher object.
+     *
+     * @param upstream publishes the items
+     * @param maxInFlight the most items that are processed at once
+     * @param operation starts the processing of an item
+     */
+    TranslationPublisher(Flow.Publisher<T> upstream, int maxInFlight,
+                         Function<T, CompletableFuture<R>> operation) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.upstream = upstream;
+        this.maxInFlight = maxInFlight;
+        this.operation = operation;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        Window window = new Window(subscriber);
+        subscriber.onSubscribe(window);
+        upstream.subscribe(window);
+    }
+
+    /**
+     * Subscribes to the upstream publisher on behalf of one subscriber and
+     * holds the results that have not been delivered to it.
+     */
+    private class Window implements Flow.Subscriber<T>, Flow.Subscription {
+        private final Flow.Subscriber<? super R> subscriber;
+        private final ConcurrentLinkedQueue<CompletableFuture<R>> results =
+                new ConcurrentLinkedQueue<>();
+
+        private volatile Flow.Subscription subscription;
+        // The number of results the subscriber has asked for
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean isUpstreamDone;
+        private volatile Throwable error;
+        private volatile boolean isCancelled;
+        private volatile boolean isTerminated;
+
+        // Only one thread at a time delivers results, and the ones that find
+        // it busy leave their work to it.
+        private final AtomicInteger work = new AtomicInteger();
+        // Used only by the delivering thread
+        private long delivered;
+        private long upstreamRequested;
+
+        Window(Flow.Subscriber<? super R> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (this.subscription != null || isCancelled) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            drain();
+        }
+
+        @Override
+        public void onNext(T item) {
+            CompletableFuture<R> result;
+            try {
+                result = operation.apply(item);
+            } catch (Throwable e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            results.add(result);
+            result.whenComplete((value, ex) -> drain());
+            // An item that arrives after the end is cancelled at once.
+            if (isCancelled || isTerminated) { drain(); }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            isUpstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            isUpstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("request must be positive");
+                isUpstreamDone = true;
+            } else {
+                requested.accumulateAndGet(n, (current, more) ->
+                        current + more < 0 ? Long.MAX_VALUE : current + more);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+            Flow.Subscription upstreamSubscription = subscription;
+            if (upstreamSubscription != null) { upstreamSubscription.cancel(); }
+            drain();
+        }
+
+        /** Delivers the results that are ready and requests more items. */
+        private void drain() {
+            if (work.getAndIncrement() != 0) { return; }
+            int missed = 1;
+            do {
+                if (!isTerminated && !isCancelled) { deliver(); }
+                if (isTerminated || isCancelled) { cancelResults(); }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            if (error != null) {
+                terminate(error);
+                return;
+            }
+
+            while (delivered < requested.get()) {
+                CompletableFuture<R> head = results.peek();
+                if (head == null || !head.isDone()) { break; }
+                results.poll();
+
+                R value;
+                try {
+                    value = head.join();
+                } catch (CompletionException e) {
+                    terminate(Translator.unwrap(e));
+                    return;
+                }
+                subscriber.onNext(value);
+                delivered++;
+                if (isCancelled) { return; }
+            }
+
+            if (isUpstreamDone && results.isEmpty()) {
+                isTerminated = true;
+                subscriber.onComplete();
+                return;
+            }
+
+            // Items that were requested but not delivered count against both
+            // the window and the subscriber's demand.
+            Flow.Subscription upstreamSubscription = subscription;
+            if (upstreamSubscription != null && !isUpstreamDone) {
+                long outstanding = upstreamRequested - delivered;
+                long wanted = Math.min(maxInFlight, requested.get() - delivered) - outstanding;
+                if (wanted > 0) {
+                    upstreamRequested += wanted;
+                    upstreamSubscription.request(wanted);
+                }
+            }
+        }
+
+        /** Cancels the results that will not be delivered, aborting their work. */
+        private void cancelResults() {
+            CompletableFuture<R> result;
+            while ((result = results.poll()) != null) {
+                result.cancel(false);
+            }
+        }
+
+        private void terminate(Throwable throwable) {
+            isTerminated = true;
+            Flow.Subscription upstreamSubscription = subscription;
+            if (upstreamSubscription != null) { upstreamSubscription.cancel(); }
+            subscriber.onError(throwable);
+        }
+    }
+}
@@ -1,10 +1,27 @@
 package com.github.mlposey;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * An asynchronous abstraction for web-based translation services.
@@ -12,7 +29,9 @@ import java.util.function.Consumer;
  * A Translator can perform the following operations asynchronously: <br>
  * - translate text from one language to another <br>
  * - identify the language of a text <br>
- * - determine if the service supports a translation direction (e.g., en-ru) <br><br>
+ * - determine if the service supports a translation direction (e.g., en-ru) <br>
+ * - translate or identify many strings at once using batch requests <br>
+ * - translate or identify a {@link Flow.Publisher} of strings with backpressure <br><br>
  *
  * <p>You should have the appropriate API key set as an environment variable
  * before using any variation of this class. {@link Key} provides information
@@ -22,22 +41,112 @@ import java.util.function.Consumer;
  * without waiting on previous results. Just ensure {@link Translator#shutdown(long)}
  * is called when the Translator will no longer accept requests. Queries cannot
  * be submitted after shutting the translator down.</p>
+ *
+ * <p>Requests are sent through a {@link Transport} and no thread waits on them
+ * while they are in flight. Consumers and error handlers are run by the
+ * Translator's thread pool.</p>
  */
 public abstract class Translator {
     private String host;
     private final Key apiKey;
+    private final Transport transport;
+
+    private final ExecutorService executor;
+    // True if the executor was created by, and should be shut down with, this Translator
+    private final boolean ownsExecutor;
+    private volatile boolean isShutdown;
+
+    // Runs timed tasks for every Translator, such as support refreshes
+    static final ScheduledExecutorService scheduler = newScheduler();
+
+    private volatile SupportMatrix support;
+    private volatile CompletableFuture<SupportMatrix> supportLoad;
+    private long supportRefresh = TimeUnit.HOURS.toSeconds(6);
+    private ScheduledFuture<?> supportRefreshTask;
+
+    private volatile LanguageDetector languageDetector;
+    private volatile RateLimiter rateLimiter;
+    private volatile KeyPool keyPool;
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+    private final AtomicReferenceArray<CircuitBreaker> breakers =
+            new AtomicReferenceArray<>(Operation.values().length);
+
+    // Calls that are waiting on the service, shared by identical calls
+    private final ConcurrentHashMap<CallKey, SharedCall> inFlight =
+            new ConcurrentHashMap<>();
+    private volatile boolean isCoalescing = true;
+
+    // The most items of a published stream that are in flight by default
+    private static final int defaultMaxInFlight = 16;
 
-    private ExecutorService executor = Executors.newCachedThreadPool();
+    // The most milliseconds a call may take, or -1 for no limit
+    private volatile long callTimeout = -1;
+    // The calls whose callers are still waiting, which shutdown aborts
+    private final Set<CallContext> calls = ConcurrentHashMap.newKeySet();
+
+    private final TranslatorMetrics metrics = new TranslatorMetrics();
+    // The operation whose call is being started on this thread, which is
+    // charged for the requests the call sends
+    private static final ThreadLocal<Operation> currentOperation = new ThreadLocal<>();
+    // The longest exchange of the call being started on this thread, in
+    // nanoseconds, which its circuit breaker judges slowness by
+    private static final ThreadLocal<AtomicLong> currentExchange = new ThreadLocal<>();
+    // The call that is being started on this thread, whose priority,
+    // deadline and cancellation apply to the requests it sends
+    private static final ThreadLocal<CallContext> currentCall = new ThreadLocal<>();
+
+    // The number of operations whose consumers have not finished
+    private int pending;
 
     /**
-     * Constructs a Translator object.
+     * Constructs a Translator object that uses the default {@link Transport}.
      *
      * @param apiKey the API key for a translation service
      * @param host the host URL for the service (e.g., https://translation.googleapis.com/language/translate/v2)
      */
     public Translator(final Key apiKey, String host) {
+        this(apiKey, host, HttpClientTransport.getDefault());
+    }
+
+    /**
+     * Constructs a Translator object.
+     *
+     * @param apiKey the API key for a translation service
+     * @param host the host URL for the service (e.g., https://translation.googleapis.com/language/translate/v2)
+     * @param transport sends requests to the service
+     */
+    public Translator(final Key apiKey, String host, final Transport transport) {
+        this(apiKey, host, transport, Executors.newCachedThreadPool(), true);
+    }
+
+    /**
+     * Constructs a Translator object that runs consumers on 'executor'.
+     *
+     * <p>The executor is not shut down by {@link Translator#shutdown(long)}, so
+     * it can be shared by many Translators. {@link TranslatorExecutor} offers
+     * bounded executors.</p>
+     *
+     * @param apiKey the API key for a translation service
+     * @param host the host URL for the service (e.g., https://translation.googleapis.com/language/translate/v2)
+     * @param transport sends requests to the service
+     * @param executor runs consumers and error handlers
+     */
+    public Translator(final Key apiKey, String host, final Transport transport,
+                      final ExecutorService executor) {
+        this(apiKey, host, transport, executor, false);
+    }
+
+    private Translator(final Key apiKey, String host, final Transport transport,
+                       final ExecutorService executor, boolean ownsExecutor) {
         this.apiKey = apiKey;
         this.host = host;
+        this.transport = transport;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+
+        for (Operation operation : Operation.values()) {
+            breakers.set(operation.ordinal(), new CircuitBreaker());
+        }
     }
 
     /**
@@ -46,17 +155,48 @@ public abstract class Translator {
      * <p>Once shut down, a Translator cannot be restarted. Further translations
      * require creation of a new Translator object.</p>
      *
+     * <p>An executor that was given to the constructor is not shut down, but
+     * this still waits for the Translator's own work to finish. Calls that
+     * are still running when the time is up are aborted, and they fail with
+     * {@link TranslationError#CANCELLED}.</p>
+     *
      * @param timeout the time in seconds to wait before shutting down
      * @throws InterruptedException if all translations were not completed
      */
     public final void shutdown(long timeout) throws InterruptedException {
-        executor.shutdown();
-        executor.awaitTermination(timeout, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+
+        synchronized (this) {
+            isShutdown = true;
+            if (supportRefreshTask != null) { supportRefreshTask.cancel(false); }
+            metrics.unregisterMBeans();
+
+            // Operations that are still waiting on the service need the
+            // thread pool to run their consumers.
+            long remaining = deadline - System.nanoTime();
+            while (pending > 0 && remaining > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        // Aborting a call runs its error handler, which needs the thread pool.
+        for (CallContext context : calls) {
+            context.cancel(TranslationError.CANCELLED);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+            executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
     }
 
     /**
      * Translates text to another language.
      *
+     * <p>The first translation starts loading the supported directions in the
+     * background (see {@link Translator#getSupport()}). Once they are known,
+     * unsupported directions are rejected with {@link TranslationError#UNSUPPORTED_DIRECTION}
+     * without contacting the service.</p>
+     *
      * <p>This ignores possible errors generated by the translation service. To
      * handle them, use {@link Translator#translate(Text, Language, Consumer, Consumer)}
      * instead. If an error is generated, translate will not invoke consumer.</p>
@@ -69,9 +209,7 @@ public abstract class Translator {
      */
     public final void translate(final Text from, final Language to,
                                 Consumer<Text[]> consumer) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> translateImpl(from, to), executor)
-                         .thenAccept(consumer);
+        translate(from, to, consumer, null);
     }
 
     /**
@@ -90,17 +228,255 @@ public abstract class Translator {
     public final void translate(final Text from, final Language to,
                                 Consumer<Text[]> consumer,
                                 Consumer<TranslationError> errorHandler) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> translateImpl(from, to), executor)
-                         .exceptionally(ex -> {
-                             errorHandler.accept((TranslationError)ex.getCause());
-                             return null;
-                         })
-                         .thenAccept(consumer);
+        translate(from, to, Priority.STANDARD, consumer, errorHandler);
+    }
+
+    /**
+     * Translates text to another language.
+     *
+     * @param from the untranslated text
+     * @param to the language into which 'from' should be translated
+     * @param priority how urgent the translation is
+     * @param consumer consumes the resulting translation
+     * @param errorHandler called if translation fails
+     * @see Translator#translate(Text, Language, Consumer, Consumer)
+     */
+    public final void translate(final Text from, final Language to, final Priority priority,
+                                Consumer<Text[]> consumer,
+                                Consumer<TranslationError> errorHandler) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, callTimeout);
+        deliver(call(() -> exposed(context, () -> checkedTranslate(from, to, context))),
+                consumer, errorHandler);
+    }
+
+    /**
+     * Translates text to another language.
+     *
+     * <p>The future is completed by the thread that receives the response, so
+     * dependent stages run without waiting on the Translator's thread pool.
+     * They should not block; use the async methods of CompletableFuture for
+     * slow work.</p>
+     *
+     * @param from the untranslated text
+     * @param to the language into which 'from' should be translated
+     * @return a future of the possible translations. It completes
+     *         exceptionally with a {@link TranslationError} if translation fails.
+     */
+    public final CompletableFuture<Text[]> translateAsync(final Text from, final Language to) {
+        return translateAsync(from, to, Priority.STANDARD);
+    }
+
+    /**
+     * Translates text to another language.
+     *
+     * @param from the untranslated text
+     * @param to the language into which 'from' should be translated
+     * @param priority how urgent the translation is
+     * @return a future of the possible translations
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Text[]> translateAsync(final Text from, final Language to,
+                                                          final Priority priority) {
+        return translateAsync(from, to, priority, callTimeout);
+    }
+
+    /**
+     * Translates text to another language within a time limit.
+     *
+     * <p>The limit covers waiting in the {@link RateLimiter}, connecting,
+     * waiting for responses and retries. When it passes, the future fails
+     * with {@link TranslationError#TIMEOUT}. Either then or when the future is
+     * cancelled, the call's requests are aborted; requests that are shared
+     * with identical calls are only aborted once every call sharing them
+     * gives up.</p>
+     *
+     * @param from the untranslated text
+     * @param to the language into which 'from' should be translated
+     * @param priority how urgent the translation is
+     * @param timeoutMillis the most milliseconds the call may take, or -1 for no limit
+     * @return a future of the possible translations
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Text[]> translateAsync(final Text from, final Language to,
+                                                          final Priority priority,
+                                                          long timeoutMillis) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, timeoutMillis);
+        return exposed(context, () -> checkedTranslate(from, to, context));
+    }
+
+    protected abstract CompletableFuture<Text[]> translateImpl(final Text from,
+                                                               final Language to);
+
+    private CompletableFuture<Text[]> checkedTranslate(final Text from, final Language to,
+                                                       final CallContext context) {
+        if (isKnownUnsupported(from, to)) {
+            return CompletableFuture.failedFuture(
+                    new TranslationError(TranslationError.UNSUPPORTED_DIRECTION));
+        }
+        return coalesced(new CallKey(Operation.TRANSLATE, context.priority, from.getLanguage(),
+                        to, from.toString()), context,
+                () -> guarded(Operation.TRANSLATE, () -> translateImpl(from, to)));
+    }
+
+    /**
+     * Translates many texts to another language.
+     *
+     * <p>Texts are sent to the service in as few requests as it allows, which
+     * is much faster than calling {@link Translator#translate(Text, Language, Consumer)}
+     * once per text.</p>
+     *
+     * <p>This ignores possible errors generated by the translation service. To
+     * handle them, use {@link Translator#translateBatch(List, Language, Consumer, Consumer)}
+     * instead. If an error is generated, translateBatch will not invoke consumer.</p>
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param consumer consumes the resulting translations. The array at index i
+     *                 holds the possible translations of from.get(i).
+     */
+    public final void translateBatch(final List<Text> from, final Language to,
+                                     Consumer<Text[][]> consumer) {
+        translateBatch(from, to, consumer, null);
+    }
+
+    /**
+     * Translates many texts to another language.
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param consumer consumes the resulting translations. The array at index i
+     *                 holds the possible translations of from.get(i).
+     * @param errorHandler called if translation fails. The error contains a
+     *                     {@link TranslationError#getCode()} method that returns
+     *                     the services error code. consumer is not invoked if
+     *                     errorHandler is called.
+     */
+    public final void translateBatch(final List<Text> from, final Language to,
+                                     Consumer<Text[][]> consumer,
+                                     Consumer<TranslationError> errorHandler) {
+        translateBatch(from, to, Priority.STANDARD, consumer, errorHandler);
+    }
+
+    /**
+     * Translates many texts to another language.
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param priority how urgent the translations are
+     * @param consumer consumes the resulting translations
+     * @param errorHandler called if translation fails
+     * @see Translator#translateBatch(List, Language, Consumer, Consumer)
+     */
+    public final void translateBatch(final List<Text> from, final Language to,
+                                     final Priority priority,
+                                     Consumer<Text[][]> consumer,
+                                     Consumer<TranslationError> errorHandler) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, callTimeout);
+        deliver(call(() -> exposed(context, () -> checkedTranslateBatch(from, to, context))),
+                consumer, errorHandler);
+    }
+
+    /**
+     * Translates many texts to another language.
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @return a future of the translations. The array at index i holds the
+     *         possible translations of from.get(i).
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Text[][]> translateBatchAsync(final List<Text> from,
+                                                                 final Language to) {
+        return translateBatchAsync(from, to, Priority.STANDARD);
+    }
+
+    /**
+     * Translates many texts to another language.
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param priority how urgent the translations are
+     * @return a future of the translations
+     * @see Translator#translateBatchAsync(List, Language)
+     */
+    public final CompletableFuture<Text[][]> translateBatchAsync(final List<Text> from,
+                                                                 final Language to,
+                                                                 final Priority priority) {
+        return translateBatchAsync(from, to, priority, callTimeout);
+    }
+
+    /**
+     * Translates many texts to another language within a time limit.
+     *
+     * @param from the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param priority how urgent the translations are
+     * @param timeoutMillis the most milliseconds the call may take, or -1 for no limit
+     * @return a future of the translations
+     * @see Translator#translateAsync(Text, Language, Priority, long)
+     */
+    public final CompletableFuture<Text[][]> translateBatchAsync(final List<Text> from,
+                                                                 final Language to,
+                                                                 final Priority priority,
+                                                                 long timeoutMillis) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, timeoutMillis);
+        return exposed(context, () -> checkedTranslateBatch(from, to, context));
+    }
+
+    protected abstract CompletableFuture<Text[][]> translateBatchImpl(final List<Text> from,
+                                                                      final Language to);
+
+    /**
+     * Translates a stream of texts, holding at most 16 in flight.
+     *
+     * @see Translator#translate(Flow.Publisher, Language, int)
+     */
+    public final Flow.Publisher<Text[]> translate(Flow.Publisher<Text> from,
+                                                  final Language to) {
+        return translate(from, to, defaultMaxInFlight);
+    }
+
+    /**
+     * Translates a stream of texts.
+     *
+     * <p>Texts are only requested from 'from' when a subscriber of the returned
+     * publisher has asked for their translations, and at most 'maxInFlight' of
+     * them are waiting on the service or on the subscriber at once. This lets
+     * a slow subscriber or service hold back the source instead of filling
+     * the Translator's thread pool.</p>
+     *
+     * <p>Translations are published in the order of their texts, by the thread
+     * that receives a response, so the subscriber should not block. The first
+     * {@link TranslationError} is passed to the subscriber's onError and cancels
+     * the subscription to 'from'. That, or the subscriber cancelling, aborts the
+     * translations in flight. Each subscriber subscribes to 'from' separately.</p>
+     *
+     * @param from publishes the untranslated texts
+     * @param to the language into which each text should be translated
+     * @param maxInFlight the most texts that are translated at once
+     * @return a publisher of the possible translations of each text
+     */
+    public final Flow.Publisher<Text[]> translate(Flow.Publisher<Text> from,
+                                                  final Language to, int maxInFlight) {
+        return new TranslationPublisher<>(from, maxInFlight, text -> translateAsync(text, to));
     }
 
-    protected abstract Text[] translateImpl(final Text from, final Language to)
-            throws TranslationError;
+    private CompletableFuture<Text[][]> checkedTranslateBatch(final List<Text> from,
+                                                              final Language to,
+                                                              final CallContext context) {
+        for (Text text : from) {
+            if (isKnownUnsupported(text, to)) {
+                return CompletableFuture.failedFuture(
+                        new TranslationError(TranslationError.UNSUPPORTED_DIRECTION));
+            }
+        }
+        return within(context,
+                () -> guarded(Operation.TRANSLATE, () -> translateBatchImpl(from, to)));
+    }
 
     /**
      * Identifies the language of a string of text.
@@ -109,15 +485,16 @@ public abstract class Translator {
      * handle them, use {@link Translator#identify(String, Consumer, Consumer)}
      * instead. If an error is generated, identify will not invoke consumer.</p>
      *
+     * <p>Text whose language cannot be determined (e.g., ';)') is not an
+     * error: its only possibility is {@link Language#UND}.</p>
+     *
      * @param mysteryText a text of unknown language origins
      * @param consumer consumes the resulting language possibilities. Since some
      *                 text can span multiple languages (e.g., 'no'), the consumer
      *                 should process Language[].
      */
     public final void identify(String mysteryText, Consumer<Language[]> consumer) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> identifyImpl(mysteryText), executor)
-                         .thenAccept(consumer);
+        identify(mysteryText, consumer, null);
     }
 
     /**
@@ -126,7 +503,8 @@ public abstract class Translator {
      * @param mysteryText a text of unknown language origins
      * @param consumer consumes the resulting language possibilities. Since some
      *                 text can span multiple languages (e.g., 'no'), the consumer
-     *                 should process Language[].
+     *                 should process Language[]. It holds only
+     *                 {@link Language#UND} if the language cannot be determined.
      * @param errorHandler called if identification fails. The error contains a
      *                     {@link TranslationError#getCode()} method that returns
      *                     the services error code. consumer is not invoked if
@@ -134,17 +512,236 @@ public abstract class Translator {
      */
     public final void identify(String mysteryText, Consumer<Language[]> consumer,
                                Consumer<TranslationError> errorHandler) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> identifyImpl(mysteryText), executor)
-                         .exceptionally(ex -> {
-                             errorHandler.accept((TranslationError)ex.getCause());
-                             return null;
-                         })
-                        .thenAccept(consumer);
+        identify(mysteryText, Priority.STANDARD, consumer, errorHandler);
+    }
+
+    /**
+     * Identifies the language of a string of text.
+     *
+     * @param mysteryText a text of unknown language origins
+     * @param priority how urgent the identification is
+     * @param consumer consumes the resulting language possibilities
+     * @param errorHandler called if identification fails
+     * @see Translator#identify(String, Consumer, Consumer)
+     */
+    public final void identify(String mysteryText, Priority priority,
+                               Consumer<Language[]> consumer,
+                               Consumer<TranslationError> errorHandler) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, callTimeout);
+        deliver(call(() -> exposed(context, () -> checkedIdentify(mysteryText, context))),
+                consumer, errorHandler);
+    }
+
+    /**
+     * Identifies the language of a string of text.
+     *
+     * @param mysteryText a text of unknown language origins
+     * @return a future of the language possibilities
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Language[]> identifyAsync(String mysteryText) {
+        return identifyAsync(mysteryText, Priority.STANDARD);
+    }
+
+    /**
+     * Identifies the language of a string of text.
+     *
+     * @param mysteryText a text of unknown language origins
+     * @param priority how urgent the identification is
+     * @return a future of the language possibilities
+     * @see Translator#identifyAsync(String)
+     */
+    public final CompletableFuture<Language[]> identifyAsync(String mysteryText,
+                                                             Priority priority) {
+        return identifyAsync(mysteryText, priority, callTimeout);
+    }
+
+    /**
+     * Identifies the language of a string of text within a time limit.
+     *
+     * @param mysteryText a text of unknown language origins
+     * @param priority how urgent the identification is
+     * @param timeoutMillis the most milliseconds the call may take, or -1 for no limit
+     * @return a future of the language possibilities
+     * @see Translator#translateAsync(Text, Language, Priority, long)
+     */
+    public final CompletableFuture<Language[]> identifyAsync(String mysteryText,
+                                                             Priority priority,
+                                                             long timeoutMillis) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, timeoutMillis);
+        return exposed(context, () -> checkedIdentify(mysteryText, context));
+    }
+
+    protected abstract CompletableFuture<Language[]> identifyImpl(String mysteryText);
+
+    private CompletableFuture<Language[]> checkedIdentify(String mysteryText,
+                                                          CallContext context) {
+        LanguageDetector detector = languageDetector;
+        Language language = detector == null ? null : detector.detect(mysteryText);
+        if (language != null) {
+            return CompletableFuture.completedFuture(new Language[] {language});
+        }
+        return coalesced(new CallKey(Operation.IDENTIFY, context.priority, null, null, mysteryText),
+                context, () -> guarded(Operation.IDENTIFY, () -> identifyImpl(mysteryText)));
+    }
+
+    /**
+     * Identifies the language of many strings of text.
+     *
+     * <p>This ignores possible errors generated by the translation service. To
+     * handle them, use {@link Translator#identifyBatch(List, Consumer, Consumer)}
+     * instead. If an error is generated, identifyBatch will not invoke consumer.</p>
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @param consumer consumes the resulting language possibilities. The array
+     *                 at index i holds the possibilities for mysteryTexts.get(i)
+     *                 and is empty if that text could not be identified.
+     */
+    public final void identifyBatch(List<String> mysteryTexts,
+                                    Consumer<Language[][]> consumer) {
+        identifyBatch(mysteryTexts, consumer, null);
+    }
+
+    /**
+     * Identifies the language of many strings of text.
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @param consumer consumes the resulting language possibilities. The array
+     *                 at index i holds the possibilities for mysteryTexts.get(i)
+     *                 and is empty if that text could not be identified.
+     * @param errorHandler called if identification fails. The error contains a
+     *                     {@link TranslationError#getCode()} method that returns
+     *                     the services error code. consumer is not invoked if
+     *                     errorHandler is called.
+     */
+    public final void identifyBatch(List<String> mysteryTexts,
+                                    Consumer<Language[][]> consumer,
+                                    Consumer<TranslationError> errorHandler) {
+        identifyBatch(mysteryTexts, Priority.STANDARD, consumer, errorHandler);
+    }
+
+    /**
+     * Identifies the language of many strings of text.
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @param priority how urgent the identifications are
+     * @param consumer consumes the resulting language possibilities
+     * @param errorHandler called if identification fails
+     * @see Translator#identifyBatch(List, Consumer, Consumer)
+     */
+    public final void identifyBatch(List<String> mysteryTexts, Priority priority,
+                                    Consumer<Language[][]> consumer,
+                                    Consumer<TranslationError> errorHandler) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, callTimeout);
+        deliver(call(() -> exposed(context, () -> checkedIdentifyBatch(mysteryTexts, context))),
+                consumer, errorHandler);
+    }
+
+    /**
+     * Identifies the language of many strings of text.
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @return a future of the language possibilities. The array at index i
+     *         holds the possibilities for mysteryTexts.get(i) and is empty if
+     *         that text could not be identified.
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Language[][]> identifyBatchAsync(List<String> mysteryTexts) {
+        return identifyBatchAsync(mysteryTexts, Priority.STANDARD);
+    }
+
+    /**
+     * Identifies the language of many strings of text.
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @param priority how urgent the identifications are
+     * @return a future of the language possibilities
+     * @see Translator#identifyBatchAsync(List)
+     */
+    public final CompletableFuture<Language[][]> identifyBatchAsync(List<String> mysteryTexts,
+                                                                    Priority priority) {
+        return identifyBatchAsync(mysteryTexts, priority, callTimeout);
+    }
+
+    /**
+     * Identifies the language of many strings of text within a time limit.
+     *
+     * @param mysteryTexts texts of unknown language origins
+     * @param priority how urgent the identifications are
+     * @param timeoutMillis the most milliseconds the call may take, or -1 for no limit
+     * @return a future of the language possibilities
+     * @see Translator#translateAsync(Text, Language, Priority, long)
+     */
+    public final CompletableFuture<Language[][]> identifyBatchAsync(List<String> mysteryTexts,
+                                                                    Priority priority,
+                                                                    long timeoutMillis) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(priority, timeoutMillis);
+        return exposed(context, () -> checkedIdentifyBatch(mysteryTexts, context));
+    }
+
+    protected abstract CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts);
+
+    /**
+     * Identifies the languages of a stream of texts, holding at most 16 in flight.
+     *
+     * @see Translator#identify(Flow.Publisher, int)
+     */
+    public final Flow.Publisher<Language[]> identify(Flow.Publisher<String> mysteryTexts) {
+        return identify(mysteryTexts, defaultMaxInFlight);
     }
 
-    protected abstract Language[] identifyImpl(String mysteryText)
-            throws TranslationError;
+    /**
+     * Identifies the languages of a stream of texts.
+     *
+     * <p>Like {@link Translator#translate(Flow.Publisher, Language, int)}, texts
+     * are requested as the subscriber asks for results, at most 'maxInFlight'
+     * are outstanding at once, and results are published in order.</p>
+     *
+     * @param mysteryTexts publishes texts of unknown language origins
+     * @param maxInFlight the most texts that are identified at once
+     * @return a publisher of the language possibilities of each text
+     */
+    public final Flow.Publisher<Language[]> identify(Flow.Publisher<String> mysteryTexts,
+                                                     int maxInFlight) {
+        return new TranslationPublisher<>(mysteryTexts, maxInFlight, this::identifyAsync);
+    }
+
+    /** Identifies the texts the detector is sure of and sends the rest to the service. */
+    private CompletableFuture<Language[][]> checkedIdentifyBatch(List<String> mysteryTexts,
+                                                                 CallContext context) {
+        LanguageDetector detector = languageDetector;
+        if (detector == null) {
+            return within(context,
+                    () -> guarded(Operation.IDENTIFY, () -> identifyBatchImpl(mysteryTexts)));
+        }
+
+        Language[][] results = new Language[mysteryTexts.size()][];
+        List<Integer> remoteIndexes = new ArrayList<>();
+        List<String> remoteTexts = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            Language language = detector.detect(mysteryTexts.get(i));
+            if (language != null) {
+                results[i] = new Language[] {language};
+            } else {
+                remoteIndexes.add(i);
+                remoteTexts.add(mysteryTexts.get(i));
+            }
+        }
+        if (remoteTexts.isEmpty()) { return CompletableFuture.completedFuture(results); }
+
+        return within(context,
+                () -> guarded(Operation.IDENTIFY, () -> identifyBatchImpl(remoteTexts)))
+                .thenApply(remoteResults -> {
+                    for (int i = 0; i < remoteResults.length; i++) {
+                        results[remoteIndexes.get(i)] = remoteResults[i];
+                    }
+                    return results;
+                });
+    }
 
     /**
      * Determines the service's support for a translation direction.
@@ -160,9 +757,7 @@ public abstract class Translator {
      */
     public final void hasSupport(final Language from, final Language to,
                                  Consumer<Boolean> consumer) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> hasSupportImpl(from, to), executor)
-                         .thenAccept(consumer);
+        hasSupport(from, to, consumer, null);
     }
 
     /**
@@ -180,17 +775,450 @@ public abstract class Translator {
     public final void hasSupport(final Language from, final Language to,
                                  Consumer<Boolean> consumer,
                                  Consumer<TranslationError> errorHandler) {
-        assert(!executor.isShutdown());
-        CompletableFuture.supplyAsync(() -> hasSupportImpl(from, to), executor)
-                         .exceptionally(ex -> {
-                             errorHandler.accept((TranslationError)ex.getCause());
-                             return null;
-                         })
-                         .thenAccept(consumer);
+        assert(!isShutdown);
+        CallContext context = new CallContext(Priority.STANDARD, callTimeout);
+        deliver(call(() -> exposed(context, () -> checkedHasSupport(from, to, context))),
+                consumer, errorHandler);
     }
 
-    protected abstract boolean hasSupportImpl(final Language from, final Language to)
-            throws TranslationError;
+    /**
+     * Determines the service's support for a translation direction.
+     *
+     * @param from the language of a potential source text
+     * @param to the language of a potential target text
+     * @return a future that is true if the direction is supported
+     * @see Translator#translateAsync(Text, Language)
+     */
+    public final CompletableFuture<Boolean> hasSupportAsync(final Language from,
+                                                            final Language to) {
+        assert(!isShutdown);
+        CallContext context = new CallContext(Priority.STANDARD, callTimeout);
+        return exposed(context, () -> checkedHasSupport(from, to, context));
+    }
+
+    protected abstract CompletableFuture<Boolean> hasSupportImpl(final Language from,
+                                                                 final Language to);
+
+    private CompletableFuture<Boolean> checkedHasSupport(final Language from, final Language to,
+                                                         final CallContext context) {
+        return coalesced(new CallKey(Operation.HAS_SUPPORT, null, from, to, null), context,
+                () -> guarded(Operation.HAS_SUPPORT, () -> hasSupportImpl(from, to)));
+    }
+
+    /**
+     * Returns the translation directions that the service supports.
+     *
+     * <p>The directions are requested from the service the first time this is
+     * called and are then refreshed in the background. Between refreshes, no
+     * requests are made.</p>
+     *
+     * @return a future of the supported directions. It completes with null if
+     *         the service cannot list them.
+     * @see Translator#setSupportRefresh(long)
+     */
+    protected final synchronized CompletableFuture<SupportMatrix> getSupport() {
+        if (supportLoad == null || supportLoad.isCompletedExceptionally()) {
+            supportLoad = loadSupportImpl().thenApply(matrix -> support = matrix);
+            supportLoad.thenRun(this::scheduleSupportRefresh);
+        }
+        return supportLoad;
+    }
+
+    /**
+     * Requests the translation directions that the service supports.
+     *
+     * @return a future of the supported directions. It completes with null if
+     *         the service cannot list them.
+     */
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Sets how often the supported translation directions are refreshed.
+     *
+     * @param interval the time in seconds between refreshes
+     */
+    public final synchronized void setSupportRefresh(long interval) {
+        supportRefresh = interval;
+        if (supportRefreshTask != null) {
+            supportRefreshTask.cancel(false);
+            supportRefreshTask = null;
+            scheduleSupportRefresh();
+        }
+    }
+
+    /**
+     * Identifies languages locally when possible.
+     *
+     * <p>identify and identifyBatch first ask the detector, and only send the
+     * texts it is not confident about to the service. Texts it identifies
+     * have a single possible language.</p>
+     *
+     * @param detector the detector to use, or null to always ask the service
+     */
+    public final void setLanguageDetector(LanguageDetector detector) {
+        languageDetector = detector;
+    }
+
+    /**
+     * Limits the rate at which requests are sent to the service.
+     *
+     * <p>Quotas usually apply to an API key, so Translators that use the same
+     * {@link Key} should share a RateLimiter.</p>
+     *
+     * @param rateLimiter the limiter to use, or null to send requests immediately
+     */
+    public final void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sends each request with a key from a pool instead of the Translator's
+     * {@link Key}. A request that is resent may use a different key.
+     *
+     * <p>Decorators such as {@link CachingTranslator} send requests through the
+     * Translator they wrap, so the pool should be set on that one.</p>
+     *
+     * @param keyPool the keys to use, or null to use the Translator's Key
+     */
+    public final void setKeyPool(KeyPool keyPool) {
+        this.keyPool = keyPool;
+    }
+
+    /**
+     * Sets how failed requests are retried.
+     *
+     * <p>By default, each Translator has its own {@link RetryPolicy#RetryPolicy()}.</p>
+     *
+     * @param retryPolicy the policy to use, or null to never retry
+     */
+    public final void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets how long each call may take, unless the call names its own limit.
+     *
+     * <p>The limit covers waiting in the {@link RateLimiter}, connecting,
+     * waiting for responses and retries. When it passes, the call's requests
+     * are aborted and the call fails with {@link TranslationError#TIMEOUT}.
+     * By default calls have no limit.</p>
+     *
+     * @param millis the most milliseconds a call may take, or -1 for no limit
+     * @see Translator#translateAsync(Text, Language, Priority, long)
+     */
+    public final void setTimeout(long millis) {
+        callTimeout = millis < 0 ? -1 : millis;
+    }
+
+    /**
+     * Sets whether identical calls share one request.
+     *
+     * <p>By default, a translate, identify, or hasSupport call that matches a
+     * call which is still waiting on the service does not send its own
+     * request. It receives the same result or error as the earlier call, so
+     * consumers of a translation may be passed the same array.</p>
+     *
+     * @param isCoalescing true to share requests, or false to always send them
+     */
+    public final void setRequestCoalescing(boolean isCoalescing) {
+        this.isCoalescing = isCoalescing;
+    }
+
+    /**
+     * Sets the circuit breaker for an operation.
+     *
+     * <p>By default, each operation has its own {@link CircuitBreaker#CircuitBreaker()}.</p>
+     *
+     * @param operation the operation whose calls the breaker watches
+     * @param breaker the breaker to use, or null to always send calls
+     */
+    public final void setCircuitBreaker(Operation operation, CircuitBreaker breaker) {
+        breakers.set(operation.ordinal(), breaker);
+    }
+
+    /** Returns the circuit breaker for an operation, or null if it has none. */
+    public final CircuitBreaker getCircuitBreaker(Operation operation) {
+        return breakers.get(operation.ordinal());
+    }
+
+    /**
+     * Returns the most characters of text the service accepts in one request.
+     *
+     * <p>{@link DocumentTranslator} packs a document into requests of at most
+     * this size. The default of 5000 is accepted by most services.</p>
+     */
+    public int getMaxRequestChars() { return 5000; }
+
+    /** Returns the latency, error, and traffic measurements of this Translator. */
+    public final TranslatorMetrics getMetrics() { return metrics; }
+
+    /**
+     * Returns true if 'code' is the service's response to an exceeded quota.
+     *
+     * <p>A {@link RateLimiter} lowers its rate when it sees these codes.</p>
+     */
+    protected boolean isQuotaError(int code) {
+        return false;
+    }
+
+    /**
+     * Returns true if the supported directions are known and do not include
+     * the translation of 'from' to 'to'. If they have not been requested yet,
+     * this starts loading them without waiting.
+     */
+    boolean isKnownUnsupported(final Text from, final Language to) {
+        SupportMatrix matrix = support;
+        if (matrix == null) {
+            // The load is not part of the call that started it, so it is
+            // neither cancelled nor charged with it.
+            if (supportLoad == null) {
+                within(CallContext.none, () ->
+                        start(Operation.HAS_SUPPORT, null, this::getSupport));
+            }
+            return false;
+        }
+        return from.isLanguageSet() ?
+                !matrix.isSupported(from.getLanguage(), to) :
+                !matrix.isTarget(to);
+    }
+
+    private synchronized void scheduleSupportRefresh() {
+        if (support == null || supportRefreshTask != null || isShutdown) {
+            return;
+        }
+
+        // A failed refresh keeps the old directions until the next one.
+        supportRefreshTask = scheduler.scheduleWithFixedDelay(() ->
+                loadSupportImpl().thenAccept(this::updateSupport),
+                supportRefresh, supportRefresh, TimeUnit.SECONDS);
+    }
+
+    private synchronized void updateSupport(SupportMatrix matrix) {
+        if (matrix == null) { return; }
+        support = matrix;
+        supportLoad = CompletableFuture.completedFuture(matrix);
+    }
+
+    /**
+     * Sends a request to the service.
+     *
+     * <p>If a {@link RateLimiter} is set, the request waits until the limiter
+     * allows it to be sent, in the queue for the priority of the call that
+     * sends it. The request is aborted if that call is cancelled or runs out
+     * of time. Requests that fail are resent according to the
+     * {@link RetryPolicy}; the returned future holds the last response.</p>
+     *
+     * @param path the path of the method, relative to the host URL
+     * @param params the request parameters as name/value pairs
+     */
+    protected CompletableFuture<Transport.Response> post(String path, Object... params) {
+        // Requests sent outside of a call, such as support refreshes, are
+        // charged to hasSupport.
+        Operation operation = currentOperation.get();
+        if (operation == null) { operation = Operation.HAS_SUPPORT; }
+        CallContext context = currentContext();
+        AtomicLong longest = currentExchange.get();
+
+        // A cancelled call stops waiting at once, whatever its request is
+        // doing. This runs before the request is aborted, so the result
+        // fails with the call's code rather than the abort.
+        CompletableFuture<Transport.Response> result = new CompletableFuture<>();
+        context.onCancel(() -> result.completeExceptionally(new TranslationError(context.getCode())));
+
+        RetryPolicy policy = retryPolicy;
+        if (policy == null) {
+            send(context, operation, longest, path, params).whenComplete((response, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(unwrap(ex));
+                } else {
+                    result.complete(response);
+                }
+            });
+            return result;
+        }
+
+        policy.recordRequest();
+        attempt(policy, 1, result, context, operation, longest, path, params);
+        return result;
+    }
+
+    /**
+     * Records the time spent decoding a response that was returned by
+     * {@link Translator#post(String, Object...)}.
+     *
+     * @param response the decoded response
+     * @param start the value of System.nanoTime() when decoding began
+     */
+    protected final void recordParse(Transport.Response response, long start) {
+        if (response.operation != null) {
+            metrics.recordParse(response.operation, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sends a request and completes 'result' with the response, unless the
+     * policy decides that the request should be sent again.
+     */
+    private void attempt(RetryPolicy policy, int attempt,
+                         CompletableFuture<Transport.Response> result,
+                         CallContext context, Operation operation, AtomicLong longest,
+                         String path, Object[] params) {
+        if (context.isCancelled()) { return; }
+        send(context, operation, longest, path, params).whenComplete((response, ex) -> {
+            long delay = -1;
+            if (response != null && !response.ok()) {
+                delay = policy.nextDelay(attempt, response.code(),
+                        RetryPolicy.parseRetryAfter(response.header("Retry-After")));
+            } else if (unwrap(ex) instanceof TranslationError) {
+                delay = policy.nextDelay(attempt,
+                        ((TranslationError) unwrap(ex)).getCode(), -1);
+            }
+
+            // A retry that could not be answered before the deadline is not sent.
+            if (delay >= 0 && context.hasDeadline && System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(delay) - context.deadline >= 0) {
+                delay = -1;
+            }
+
+            if (delay >= 0 && !isShutdown && !context.isCancelled()) {
+                // The delay is spent on the timer so that no thread waits.
+                scheduler.schedule(() ->
+                        attempt(policy, attempt + 1, result, context, operation, longest,
+                                path, params),
+                        delay, TimeUnit.MILLISECONDS);
+            } else if (ex != null) {
+                result.completeExceptionally(unwrap(ex));
+            } else {
+                result.complete(response);
+            }
+        });
+    }
+
+    /** Sends a request once it is allowed by the RateLimiter. */
+    private CompletableFuture<Transport.Response> send(CallContext context, Operation operation,
+                                                       AtomicLong longest, String path,
+                                                       Object[] params) {
+        int chars = countChars(params);
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) { return exchange(context, operation, longest, 0, chars, path, params); }
+
+        long queued = System.nanoTime();
+        metrics.startQueue(operation);
+        CompletableFuture<Void> admitted =
+                limiter.acquire(chars, context.priority, context.remainingMillis());
+        context.onCancel(() -> admitted.cancel(false));
+        return admitted
+                .handle((ready, ex) -> {
+                    long queueNanos = System.nanoTime() - queued;
+                    metrics.finishQueue(operation, queueNanos);
+                    // A shed request is never sent.
+                    if (ex != null) {
+                        return CompletableFuture.<Transport.Response>failedFuture(unwrap(ex));
+                    }
+                    return exchange(context, operation, longest, queueNanos, chars, path, params);
+                })
+                .thenCompose(Function.identity())
+                .whenComplete((response, ex) -> {
+                    if (response == null) { return; }
+                    if (isQuotaError(response.code())) {
+                        // The key that ran out is already quarantined, so the
+                        // rate is only cut once no other key is left.
+                        KeyPool pool = keyPool;
+                        if (pool == null || pool.getAvailableCount() == 0) {
+                            limiter.recordQuotaError();
+                        }
+                    } else if (response.ok()) {
+                        limiter.recordSuccess();
+                    }
+                });
+    }
+
+    /**
+     * Sends a request through the Transport and records how long it took,
+     * including in 'longest' if the request belongs to a guarded call.
+     */
+    private CompletableFuture<Transport.Response> exchange(CallContext context, Operation operation,
+                                                           AtomicLong longest, long queueNanos,
+                                                           int chars, String path,
+                                                           Object[] params) {
+        KeyPool pool = keyPool;
+        KeyPool.Entry key = pool != null ? pool.acquire() : null;
+
+        long start = System.nanoTime();
+        CompletableFuture<Transport.Response> sent;
+        try {
+            sent = transport.post(host + path,
+                    context.hasDeadline ? Duration.ofNanos(Math.max(1, context.deadline - start)) :
+                            null,
+                    key != null ? withKey(params, key.value) : params);
+        } catch (Throwable e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Transport.Response> request = sent;
+        context.onCancel(() -> request.cancel(true));
+        return sent.whenComplete((response, ex) -> {
+            long nanos = System.nanoTime() - start;
+            if (longest != null) { longest.accumulateAndGet(nanos, Math::max); }
+            metrics.recordRequest(operation, queueNanos, nanos, chars,
+                    response != null ? response.code() :
+                            context.isCancelled() ? context.getCode() : TranslationError.NETWORK_ERROR);
+            if (response != null) {
+                response.operation = operation;
+                metrics.recordTransfer(operation, response.bytesSent(), response.bytesReceived());
+            }
+            if (key != null) { releaseKey(pool, key, response, context.isCancelled()); }
+        }).handle((response, ex) -> {
+            if (ex == null) { return response; }
+            // A request that failed once its call ran out of time failed
+            // because of the deadline rather than the service.
+            if (context.isExpired()) {
+                throw new TranslationError(TranslationError.TIMEOUT, unwrap(ex));
+            }
+            throw new CompletionException(unwrap(ex));
+        });
+    }
+
+    /** Returns a copy of 'params' in which the API key is replaced by 'key'. */
+    private Object[] withKey(Object[] params, String key) {
+        Object[] copy = params.clone();
+        for (int i = 1; i < copy.length; i += 2) {
+            if (copy[i] == apiKey) { copy[i] = key; }
+        }
+        return copy;
+    }
+
+    /**
+     * Tells the pool how a request that used 'key' went. A request that was
+     * aborted by its call says nothing about the key.
+     */
+    private void releaseKey(KeyPool pool, KeyPool.Entry key, Transport.Response response,
+                            boolean isAborted) {
+        if (response == null) {
+            pool.release(key, !isAborted, false, -1);
+            return;
+        }
+        int code = response.code();
+        boolean isQuota = isQuotaError(code);
+        // Other client errors are caused by the request rather than the key.
+        boolean isError = isQuota || code == 401 || code == 403 || code >= 500;
+        pool.release(key, isError, isQuota, isQuota ?
+                RetryPolicy.parseRetryAfter(response.header("Retry-After")) : -1);
+    }
+
+    /** Returns the number of characters of text in the values of 'params'. */
+    private int countChars(Object[] params) {
+        int chars = 0;
+        for (int i = 1; i < params.length; i += 2) {
+            // Neither the API key nor a response field selection is text
+            // that the service translates.
+            if (params[i] != null && params[i] != apiKey && !"fields".equals(params[i - 1])) {
+                chars += params[i].toString().length();
+            }
+        }
+        return chars;
+    }
 
     /**
      * Returns the host URL for the service (e.g., https://translation.googleapis.com/language/translate/v2).
@@ -204,4 +1232,422 @@ public abstract class Translator {
     protected Key getApiKey() {
         return apiKey;
     }
+
+    /** Returns the Transport that sends requests to the service. */
+    protected Transport getTransport() { return transport; }
+
+    /** Returns the executor that runs consumers and error handlers. */
+    protected ExecutorService getExecutor() { return executor; }
+
+    /** Returns true if 'text' is too long to send in one request. */
+    final boolean isTooLong(Text text) {
+        return text.toString().length() > getMaxRequestChars();
+    }
+
+    /**
+     * Translates a text that is too long for one request. The text is split at
+     * paragraphs, sentences, or words, the pieces are translated at once, and
+     * their translations are joined with the original whitespace.
+     *
+     * @param translate translates a piece that fits in one request
+     */
+    final CompletableFuture<Text[]> translatePieces(Text from, Language to,
+            Function<Text, CompletableFuture<Text[]>> translate) {
+        List<Segmenter.Segment> pieces = Segmenter.split(from.toString(), getMaxRequestChars());
+        List<CompletableFuture<Text[]>> requests = new ArrayList<>();
+        for (Segmenter.Segment piece : pieces) {
+            requests.add(piece.text.isEmpty() ? null :
+                    translate.apply(new Text(piece.text, from.getLanguage())));
+        }
+
+        return CompletableFuture.allOf(requests.stream().filter(Objects::nonNull)
+                .toArray(CompletableFuture<?>[]::new))
+                .thenApply(done -> {
+                    StringBuilder translation = new StringBuilder();
+                    for (int i = 0; i < pieces.size(); i++) {
+                        if (requests.get(i) != null) {
+                            translation.append(requests.get(i).join()[0]);
+                        }
+                        translation.append(pieces.get(i).separator);
+                    }
+                    return new Text[] {new Text(translation.toString(), to)};
+                });
+    }
+
+    /**
+     * Groups the texts at 'indexes' so that each group fits in one request.
+     * Texts that are too long on their own are left out.
+     *
+     * @param texts the texts, as Text or String objects
+     * @param maxCount the most texts in one request
+     */
+    final List<List<Integer>> pack(List<?> texts, List<Integer> indexes, int maxCount) {
+        int maxChars = getMaxRequestChars();
+        List<List<Integer>> groups = new ArrayList<>();
+        List<Integer> group = new ArrayList<>();
+        int chars = 0;
+        for (int i : indexes) {
+            int length = texts.get(i).toString().length();
+            if (length > maxChars) { continue; }
+            if (!group.isEmpty() && (group.size() == maxCount || chars + length > maxChars)) {
+                groups.add(group);
+                group = new ArrayList<>();
+                chars = 0;
+            }
+            group.add(i);
+            chars += length;
+        }
+        if (!group.isEmpty()) { groups.add(group); }
+        return groups;
+    }
+
+    /**
+     * Returns request parameters that repeat the parameter 'name' once for
+     * each of 'values', followed by the name/value pairs in 'params'.
+     *
+     * <p>Services that accept many strings in one request expect them as
+     * repeated parameters (e.g., q=a&amp;q=b).</p>
+     */
+    protected static Object[] repeat(String name, List<?> values, Object... params) {
+        Object[] result = new Object[params.length + values.size() * 2];
+        System.arraycopy(params, 0, result, 0, params.length);
+        for (int i = 0; i < values.size(); i++) {
+            result[params.length + i * 2] = name;
+            result[params.length + i * 2 + 1] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a call unless the circuit breaker for 'operation' is open, and
+     * records its outcome with the breaker and the metrics.
+     *
+     * <p>The breaker judges the call by its longest request to the service,
+     * so time spent waiting in the RateLimiter or between retries does not
+     * make a call slow.</p>
+     */
+    <T> CompletableFuture<T> guarded(Operation operation,
+                                     Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        metrics.startCall(operation);
+
+        // A call made by another guarded call, such as a routed one, also
+        // counts toward the outer call's longest request.
+        AtomicLong outer = currentExchange.get();
+        CircuitBreaker breaker = breakers.get(operation.ordinal());
+        CompletableFuture<T> result;
+        if (breaker == null) {
+            result = start(operation, outer, call);
+        } else {
+            long permit = breaker.tryAcquire();
+            if (permit == CircuitBreaker.denied) {
+                result = CompletableFuture.failedFuture(
+                        new TranslationError(TranslationError.CIRCUIT_OPEN));
+            } else {
+                AtomicLong longest = new AtomicLong();
+                result = start(operation, longest, call).whenComplete((value, ex) -> {
+                    if (outer != null) { outer.accumulateAndGet(longest.get(), Math::max); }
+                    breaker.record(permit, longest.get(), ex == null ? null : unwrap(ex));
+                });
+            }
+        }
+        return result.whenComplete((value, ex) ->
+                metrics.finishCall(operation, System.nanoTime() - start,
+                        ex == null ? null : unwrap(ex)));
+    }
+
+    /**
+     * Starts a call, charging the requests it sends on this thread to
+     * 'operation' and timing them in 'longest', which may be null. Errors
+     * thrown while starting are returned as a failed future.
+     */
+    private static <T> CompletableFuture<T> start(Operation operation, AtomicLong longest,
+                                                  Supplier<CompletableFuture<T>> call) {
+        Operation outer = currentOperation.get();
+        AtomicLong outerExchange = currentExchange.get();
+        currentOperation.set(operation);
+        currentExchange.set(longest);
+        try {
+            return call.get();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            currentOperation.set(outer);
+            currentExchange.set(outerExchange);
+        }
+    }
+
+    /** Returns the context of the call being started on this thread. */
+    static CallContext currentContext() {
+        CallContext current = currentCall.get();
+        return current != null ? current : CallContext.none;
+    }
+
+    /** Starts a call whose requests are sent in 'context'. */
+    static <T> CompletableFuture<T> within(CallContext context,
+                                                   Supplier<CompletableFuture<T>> call) {
+        CallContext outer = currentCall.get();
+        currentCall.set(context);
+        try {
+            return call.get();
+        } finally {
+            currentCall.set(outer);
+        }
+    }
+
+    /**
+     * Starts a call, or returns the result of an identical call that is still
+     * running. The shared request is sent in its own context, which is
+     * cancelled once every call that shares it is.
+     *
+     * <p>A call only joins a request whose deadline is no earlier than its
+     * own. Otherwise it sends a new request, which later calls join instead.
+     * Each call that joins gets its own copy of the result, so that callers
+     * cannot see each other's changes to it.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesced(CallKey key, CallContext context,
+                                               Supplier<CompletableFuture<T>> call) {
+        if (!isCoalescing) { return within(context, call); }
+
+        while (true) {
+            SharedCall shared = new SharedCall(context.copy());
+            SharedCall running = inFlight.putIfAbsent(key, shared);
+            if (running == null) { return share(key, shared, context, call); }
+            if (running.join(context)) {
+                context.onCancel(() -> running.leave(context.getCode()));
+                return (CompletableFuture<T>) running.result.thenApply(Translator::copyOf);
+            }
+            // The running request was given up on by every call that shared
+            // it, or it could time out before this call does.
+            if (inFlight.replace(key, running, shared)) {
+                return share(key, shared, context, call);
+            }
+        }
+    }
+
+    /** Sends the request of a call that others may join. */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> share(CallKey key, SharedCall shared, CallContext context,
+                                           Supplier<CompletableFuture<T>> call) {
+        context.onCancel(() -> shared.leave(context.getCode()));
+        CompletableFuture<T> result;
+        try {
+            result = within(shared.context, call);
+        } catch (Throwable e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, ex) -> {
+            // Calls made from now on send a new request.
+            inFlight.remove(key, shared);
+            if (ex == null) {
+                shared.result.complete(value);
+            } else {
+                shared.result.completeExceptionally(unwrap(ex));
+            }
+        });
+        return (CompletableFuture<T>) shared.result;
+    }
+
+    /** Returns a copy of 'value' if it is an array, including any arrays it holds. */
+    private static Object copyOf(Object value) {
+        if (!(value instanceof Object[])) { return value; }
+        Object[] copy = ((Object[]) value).clone();
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = copyOf(copy[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * Starts an operation and counts it as pending until its consumer runs.
+     * Errors thrown while starting are returned as a failed future.
+     */
+    private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> operation) {
+        synchronized (this) { pending++; }
+        try {
+            return operation.get();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Starts an operation for a caller that waits on its future. The future
+     * is the caller's own, and it fails with a TranslationError.
+     *
+     * <p>The caller gives up by completing or cancelling the future, and the
+     * future fails with {@link TranslationError#TIMEOUT} when the context's
+     * deadline passes. Either way the context is cancelled, which aborts the
+     * requests that no other caller waits on.</p>
+     */
+    private <T> CompletableFuture<T> exposed(CallContext context,
+                                             Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> started;
+        try {
+            started = operation.get();
+        } catch (Throwable e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        started.whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(toTranslationError(ex));
+            }
+        });
+
+        context.onCancel(() ->
+                result.completeExceptionally(new TranslationError(context.getCode())));
+        if (context.hasDeadline && !result.isDone()) {
+            ScheduledFuture<?> timer = scheduler.schedule(
+                    () -> context.cancel(TranslationError.TIMEOUT),
+                    context.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            result.whenComplete((value, ex) -> timer.cancel(false));
+        }
+        calls.add(context);
+        CompletableFuture<T> running = started;
+        result.whenComplete((value, ex) -> {
+            calls.remove(context);
+            if (!running.isDone()) {
+                context.cancel(unwrap(ex) instanceof TimeoutException ?
+                        TranslationError.TIMEOUT : TranslationError.CANCELLED);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Passes the outcome of an operation to consumer or errorHandler.
+     *
+     * <p>If the executor has no room for the consumer, errorHandler is called
+     * with {@link TranslationError#REJECTED} on the current thread instead.</p>
+     */
+    private <T> void deliver(CompletableFuture<T> result, Consumer<T> consumer,
+                             Consumer<TranslationError> errorHandler) {
+        result.whenComplete((value, ex) -> {
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (ex == null) {
+                            consumer.accept(value);
+                        } else if (errorHandler != null) {
+                            errorHandler.accept(toTranslationError(ex));
+                        }
+                    } finally {
+                        finishPending();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                try {
+                    if (errorHandler != null) {
+                        errorHandler.accept(new TranslationError(TranslationError.REJECTED, e));
+                    }
+                } finally {
+                    finishPending();
+                }
+            }
+        });
+    }
+
+    private synchronized void finishPending() {
+        if (--pending == 0) { notifyAll(); }
+    }
+
+    /**
+     * Creates the scheduler. Cancelled tasks, such as the deadlines of calls
+     * that finished, are removed at once rather than when they were due.
+     */
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "translation-kit-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ?
+                ex.getCause() : ex;
+    }
+
+    /**
+     * Returns the TranslationError that caused an operation to fail. Other
+     * exceptions are wrapped with {@link TranslationError#UNEXPECTED}.
+     */
+    static TranslationError toTranslationError(Throwable ex) {
+        Throwable cause = unwrap(ex);
+        return cause instanceof TranslationError ? (TranslationError) cause :
+                new TranslationError(TranslationError.UNEXPECTED, cause);
+    }
+
+    /** A request that is shared by identical calls. */
+    private static class SharedCall {
+        final CallContext context;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        // The calls that still wait on the request
+        private int callers = 1;
+
+        SharedCall(CallContext context) {
+            this.context = context;
+        }
+
+        /**
+         * Adds a caller, unless every caller has already given up or the
+         * request could time out before the caller does.
+         */
+        synchronized boolean join(CallContext caller) {
+            if (callers == 0 || !context.outlasts(caller)) { return false; }
+            callers++;
+            return true;
+        }
+
+        /** Removes a caller that gave up, aborting the request if it was the last. */
+        void leave(int code) {
+            synchronized (this) {
+                if (--callers > 0) { return; }
+            }
+            context.cancel(code);
+        }
+    }
+
+    /**
+     * Identifies calls that would send the same request. Calls of different
+     * priorities do not share requests, so that urgent calls do not wait in
+     * the queue of a less urgent one.
+     */
+    private static class CallKey {
+        final Operation operation;
+        final Priority priority;
+        final Language from;
+        final Language to;
+        final String content;
+
+        CallKey(Operation operation, Priority priority, Language from, Language to,
+                String content) {
+            this.operation = operation;
+            this.priority = priority;
+            this.from = from;
+            this.to = to;
+            this.content = content;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CallKey)) { return false; }
+            CallKey other = (CallKey) o;
+            return operation == other.operation && priority == other.priority &&
+                    from == other.from &&
+                    to == other.to && Objects.equals(content, other.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, priority, from, to, content);
+        }
+    }
 }
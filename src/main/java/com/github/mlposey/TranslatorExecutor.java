@@ -0,0 +1,122 @@
+package com.github.mlposey;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>An executor for {@link Translator} work that reports how busy it is.</p>
+ *
+ * {@link TranslatorExecutor#bounded(int, int, RejectedExecutionHandler)} runs
+ * tasks on a fixed number of threads and holds a fixed number of waiting tasks.
+ * Any other ExecutorService can be monitored with
+ * {@link TranslatorExecutor#of(ExecutorService)}, such as the virtual thread
+ * executor of Java 21 or newer:
+ *
+ * <pre>
+ * TranslatorExecutor.of(Executors.newVirtualThreadPerTaskExecutor())
+ * </pre>
+ *
+ * @see Translators#get(Key, ExecutorService)
+ */
+public class TranslatorExecutor extends AbstractExecutorService {
+    private final ExecutorService executor;
+    // The pool behind a bounded executor, or null for other modes
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected;
+
+    private TranslatorExecutor(final ExecutorService executor, final ThreadPoolExecutor pool,
+                               final AtomicLong rejected) {
+        this.executor = executor;
+        this.pool = pool;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Returns an executor with a fixed number of threads and a bounded queue.
+     *
+     * @param threads the most tasks that run at once
+     * @param queueSize the most tasks that wait for a thread
+     * @param policy decides what happens to tasks that arrive when the queue is
+     *               full (e.g., {@link ThreadPoolExecutor.CallerRunsPolicy})
+     */
+    public static TranslatorExecutor bounded(int threads, int queueSize,
+                                             RejectedExecutionHandler policy) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "translator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        AtomicLong rejected = new AtomicLong();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), factory,
+                (task, executor) -> {
+                    rejected.incrementAndGet();
+                    policy.rejectedExecution(task, executor);
+                });
+        pool.allowCoreThreadTimeOut(true);
+
+        return new TranslatorExecutor(pool, pool, rejected);
+    }
+
+    /** Returns an executor that monitors the tasks it passes to 'executor'. */
+    public static TranslatorExecutor of(final ExecutorService executor) {
+        return new TranslatorExecutor(executor, null, new AtomicLong());
+    }
+
+    /** Returns the number of tasks that are running. */
+    public int getActiveCount() { return active.get(); }
+
+    /** Returns the number of tasks that are waiting for a thread. */
+    public int getQueuedCount() { return pool != null ? pool.getQueue().size() : 0; }
+
+    /** Returns the number of tasks that the executor did not accept. */
+    public long getRejectedCount() { return rejected.get(); }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Bounded executors count rejections in their policy.
+            if (pool == null) { rejected.incrementAndGet(); }
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() { executor.shutdown(); }
+
+    @Override
+    public List<Runnable> shutdownNow() { return executor.shutdownNow(); }
+
+    @Override
+    public boolean isShutdown() { return executor.isShutdown(); }
+
+    @Override
+    public boolean isTerminated() { return executor.isTerminated(); }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
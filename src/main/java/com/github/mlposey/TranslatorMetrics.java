@@ -0,0 +1,124 @@
+package com.github.mlposey;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Measurements of the calls a {@link Translator} makes.</p>
+ *
+ * Metrics are kept for each {@link Operation} and are always on: recording
+ * takes no locks and allocates nothing. They can be read directly, pushed to
+ * a {@link MetricsListener}, or published as JMX MBeans.
+ *
+ * <pre>
+ * Translator translator = Translators.get(Key.GOOGLE);
+ * translator.getMetrics().registerMBeans("google");
+ * double p99 = translator.getMetrics().get(Operation.TRANSLATE).getLatencyP99();
+ * </pre>
+ *
+ * @see Translator#getMetrics()
+ */
+public class TranslatorMetrics {
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+    // Copied when it changes, so that reading it does not allocate an iterator
+    private volatile MetricsListener[] listeners = new MetricsListener[0];
+    private final List<ObjectName> mbeans = new CopyOnWriteArrayList<>();
+
+    TranslatorMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    /** Returns the metrics of an operation. */
+    public OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /** Adds a listener that receives every measurement. */
+    public synchronized void addListener(MetricsListener listener) {
+        MetricsListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        listeners = copy;
+    }
+
+    /** Removes a listener that was added with addListener. */
+    public synchronized void removeListener(MetricsListener listener) {
+        List<MetricsListener> copy = new ArrayList<>(Arrays.asList(listeners));
+        copy.remove(listener);
+        listeners = copy.toArray(new MetricsListener[0]);
+    }
+
+    /**
+     * Publishes the metrics of each operation to the platform MBean server.
+     *
+     * <p>The MBeans are named com.github.mlposey:type=Translator,name='name',operation=...
+     * and are unregistered when the Translator is shut down.</p>
+     *
+     * @param name a name that is unique among the application's Translators
+     * @throws JMException if the MBeans could not be registered
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : Operation.values()) {
+            ObjectName objectName = new ObjectName("com.github.mlposey:type=Translator,name=" +
+                    ObjectName.quote(name) + ",operation=" + operation.name().toLowerCase());
+            server.registerMBean(get(operation), objectName);
+            mbeans.add(objectName);
+        }
+    }
+
+    /** Removes the MBeans that were published by registerMBeans. */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : mbeans) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // The MBean was already removed by someone else.
+            }
+        }
+        mbeans.clear();
+    }
+
+    void startCall(Operation operation) { get(operation).startCall(); }
+
+    void finishCall(Operation operation, long nanos, Throwable error) {
+        get(operation).finishCall(nanos, error);
+        for (MetricsListener listener : listeners) {
+            listener.onCall(operation, nanos, error);
+        }
+    }
+
+    void startQueue(Operation operation) { get(operation).startQueue(); }
+
+    void finishQueue(Operation operation, long nanos) { get(operation).finishQueue(nanos); }
+
+    void recordRequest(Operation operation, long queueNanos, long networkNanos,
+                       int chars, int status) {
+        get(operation).recordRequest(networkNanos, chars);
+        for (MetricsListener listener : listeners) {
+            listener.onRequest(operation, queueNanos, networkNanos, chars, status);
+        }
+    }
+
+    void recordTransfer(Operation operation, long bytesSent, long bytesReceived) {
+        get(operation).recordTransfer(bytesSent, bytesReceived);
+        for (MetricsListener listener : listeners) {
+            listener.onTransfer(operation, bytesSent, bytesReceived);
+        }
+    }
+
+    void recordParse(Operation operation, long nanos) {
+        get(operation).recordParse(nanos);
+        for (MetricsListener listener : listeners) {
+            listener.onParse(operation, nanos);
+        }
+    }
+}
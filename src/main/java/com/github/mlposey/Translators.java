@@ -1,5 +1,7 @@
 package com.github.mlposey;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * A convenience class for creating {@link Translator} objects.
  *
@@ -7,6 +9,8 @@ package com.github.mlposey;
  * @see Key
  */
 public class Translators {
+    private static final String yandexHost = "https://translate.yandex.net/api/v1.5/tr.json/";
+    private static final String googleHost = "https://translation.googleapis.com/language/translate/v2";
 
     /**
      * Returns a Translator for a service that is associated with apiKey.
@@ -15,22 +19,65 @@ public class Translators {
      *                          is not defined in the system
      */
     public static Translator get(final Key apiKey) throws RuntimeException {
-        if (apiKey.toString() == null) {
-            throw new RuntimeException("API key " + apiKey.var() + " not set");
+        checkKey(apiKey);
+
+        switch (apiKey) {
+            case YANDEX:
+                return new YandexTranslator(apiKey, yandexHost);
+            case GOOGLE:
+                return new GoogleTranslator(apiKey, googleHost);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a Translator for a service that is associated with apiKey.
+     *
+     * @param apiKey the key of the service
+     * @param executor runs consumers and error handlers. It is not shut down
+     *                 with the Translator. See {@link TranslatorExecutor} for
+     *                 bounded executors.
+     * @throws RuntimeException if the environment variable indicated by apiKey.var()
+     *                          is not defined in the system
+     */
+    public static Translator get(final Key apiKey, final ExecutorService executor)
+            throws RuntimeException {
+        checkKey(apiKey);
+
+        switch (apiKey) {
+            case YANDEX:
+                return new YandexTranslator(apiKey, yandexHost,
+                        HttpClientTransport.getDefault(), executor);
+            case GOOGLE:
+                return new GoogleTranslator(apiKey, googleHost,
+                        HttpClientTransport.getDefault(), executor);
         }
+        return null;
+    }
 
+    /**
+     * Returns a Translator for a service that is associated with apiKey, but
+     * that sends its requests to 'host' (e.g., a {@link FakeTranslationServer}).
+     *
+     * <p>Since the host may not need a real key, the environment variable
+     * indicated by apiKey.var() does not have to be defined.</p>
+     *
+     * @param apiKey the key of the service
+     * @param host the host URL to use instead of the service's
+     */
+    public static Translator get(final Key apiKey, String host) {
         switch (apiKey) {
             case YANDEX:
-                return new YandexTranslator(
-                        apiKey,
-                        "https://translate.yandex.net/api/v1.5/tr.json/"
-                );
+                return new YandexTranslator(apiKey, host);
             case GOOGLE:
-                return new GoogleTranslator(
-                        apiKey,
-                        "https://translation.googleapis.com/language/translate/v2"
-                );
+                return new GoogleTranslator(apiKey, host);
         }
         return null;
     }
+
+    private static void checkKey(final Key apiKey) throws RuntimeException {
+        if (apiKey.toString() == null) {
+            throw new RuntimeException("API key " + apiKey.var() + " not set");
+        }
+    }
 }
@@ -0,0 +1,121 @@
+package com.github.mlposey;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>Sends requests to a translation service.</p>
+ *
+ * A {@link Translator} uses a Transport for all of its communication with a
+ * service. Implementations must be thread-safe and should not block the
+ * calling thread while a request is in flight.
+ *
+ * @see HttpClientTransport
+ */
+public interface Transport {
+    /**
+     * Sends a POST request.
+     *
+     * @param url the URL of the service method
+     * @param params the request parameters as name/value pairs. Values are
+     *               converted to strings with toString.
+     * @return a future of the response. The future fails with a
+     *         {@link TranslationError} if the service cannot be reached.
+     */
+    CompletableFuture<Response> post(String url, Object... params);
+
+    /**
+     * Sends a POST request that must be answered within 'timeout'.
+     *
+     * <p>Cancelling the returned future should abort the request. The
+     * default implementation ignores the timeout and relies on the
+     * {@link Translator} to stop waiting.</p>
+     *
+     * @param url the URL of the service method
+     * @param timeout the most time to wait for the response, or null for no limit
+     * @param params the request parameters as name/value pairs
+     * @return a future of the response. The future fails with a
+     *         {@link TranslationError} if the service cannot be reached or
+     *         the timeout passes first.
+     */
+    default CompletableFuture<Response> post(String url, Duration timeout, Object... params) {
+        return post(url, params);
+    }
+
+    /**
+     * A response from a translation service.
+     */
+    class Response {
+        private final int code;
+        private final byte[] body;
+        private final Map<String, List<String>> headers;
+        private final long bytesSent;
+        private final long bytesReceived;
+        // The operation that sent the request, set by the Translator
+        Operation operation;
+
+        /**
+         * Constructs a Response object.
+         *
+         * @param code the HTTP status code
+         * @param body the undecoded response body
+         * @param headers the response headers. Names must be lowercase.
+         */
+        public Response(int code, byte[] body, Map<String, List<String>> headers) {
+            this(code, body, headers, 0, body.length);
+        }
+
+        /**
+         * Constructs a Response object.
+         *
+         * @param code the HTTP status code
+         * @param body the undecoded response body
+         * @param headers the response headers. Names must be lowercase.
+         * @param bytesSent the size of the request's parameters as sent
+         * @param bytesReceived the size of the response body as received,
+         *                      before it was decompressed
+         */
+        public Response(int code, byte[] body, Map<String, List<String>> headers,
+                        long bytesSent, long bytesReceived) {
+            this.code = code;
+            this.body = body;
+            this.headers = headers;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        /** Returns the HTTP status code. */
+        public int code() { return code; }
+
+        /** Returns true if the status code is 200 (OK). */
+        public boolean ok() { return code == 200; }
+
+        /** Returns a stream over the response body that does not copy it. */
+        public InputStream stream() { return new ByteArrayInputStream(body); }
+
+        /** Returns the undecoded response body without copying it. */
+        byte[] bytes() { return body; }
+
+        /** Returns the size of the request's parameters as sent, or 0 if unknown. */
+        public long bytesSent() { return bytesSent; }
+
+        /** Returns the size of the response body as it was received. */
+        public long bytesReceived() { return bytesReceived; }
+
+        /** Returns the response body as a UTF-8 string. */
+        public String body() { return new String(body, StandardCharsets.UTF_8); }
+
+        /** Returns the first value of a header, or null if it was not sent. */
+        public String header(String name) {
+            List<String> values = headers.getOrDefault(name.toLowerCase(),
+                    Collections.emptyList());
+            return values.isEmpty() ? null : values.get(0);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.github.mlposey;
 
-import com.github.kevinsawicki.http.HttpRequest;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>A {@link Translator} for the Yandex.Translate service.</p>
@@ -15,16 +19,19 @@ import com.google.gson.JsonPrimitive;
 public class YandexTranslator extends Translator {
     // The response code of a successful request
     private final int okResponse = 200;
+    // The response when the key's daily character limit is exceeded
+    private final int limitExceeded = 404;
+    // The largest request the API accepts
+    private final int maxRequestChars = 10000;
 
     /**
-     * A JSON response from the API.
-     *
-     * Useful for Gson marshaling with translate and identify.
+     * The fields of a JSON response from the API that are used.
      */
-    protected class JSONResponse {
-        public int code;
-        public String lang;
-        public String[] text;
+    private static class Reply {
+        int code;
+        String lang;
+        List<String> text;
+        List<String> dirs;
     }
 
     /**
@@ -37,70 +44,228 @@ public class YandexTranslator extends Translator {
         super(apiKey, host);
     }
 
+    /**
+     * Constructs a YandexTranslator object.
+     *
+     * @param apiKey the Yandex.Translate API key
+     * @param host the host URL (e.g., https://translate.yandex.net/api/v1.5/tr.json/)
+     * @param transport sends requests to the service
+     */
+    public YandexTranslator(final Key apiKey, String host, final Transport transport) {
+        super(apiKey, host, transport);
+    }
+
+    /**
+     * Constructs a YandexTranslator object.
+     *
+     * @param apiKey the Yandex.Translate API key
+     * @param host the host URL (e.g., https://translate.yandex.net/api/v1.5/tr.json/)
+     * @param transport sends requests to the service
+     * @param executor runs consumers and error handlers
+     */
+    public YandexTranslator(final Key apiKey, String host, final Transport transport,
+                            final ExecutorService executor) {
+        super(apiKey, host, transport, executor);
+    }
+
     @Override
-    protected Text[] translateImpl(Text from, Language to) throws TranslationError {
-        String responseBody = getResponseBody(
+    protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+        if (isTooLong(from)) {
+            return translatePieces(from, to, piece -> translateImpl(piece, to));
+        }
+
+        return getResponse(
                 "translate",
                 "key", getApiKey(),
                 "text", from,
                 "lang", from.isLanguageSet() ?
                         from.getLanguage().concat(to) :
                         to
-        );
+        ).thenApply(response -> {
+            Text[] translations = new Text[response.text.size()];
+
+            for (int i = 0; i < translations.length; i++) {
+                translations[i] = new Text(response.text.get(i), to);
+            }
+            return translations;
+        });
+    }
 
-        JSONResponse response = new Gson()
-                .fromJson(responseBody, JSONResponse.class);
+    @Override
+    protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+        // A request has one translation direction, so texts are grouped by
+        // their source language. Each group is sent in as few requests as
+        // the size limit allows.
+        Map<Object, List<Integer>> directions = new LinkedHashMap<>();
+        for (int i = 0; i < from.size(); i++) {
+            Text text = from.get(i);
+            directions.computeIfAbsent(text.isLanguageSet() ?
+                            text.getLanguage().concat(to) :
+                            to,
+                    k -> new ArrayList<>()).add(i);
+        }
+
+        Text[][] translations = new Text[from.size()][];
+        List<CompletableFuture<?>> requests = new ArrayList<>();
 
-        if (response.code != okResponse) {
-            throw new TranslationError(response.code);
+        for (int i = 0; i < from.size(); i++) {
+            final int index = i;
+            if (isTooLong(from.get(i))) {
+                requests.add(translateImpl(from.get(i), to)
+                        .thenAccept(texts -> translations[index] = texts));
+            }
         }
 
-        Text[] translations = new Text[response.text.length];
+        for (Map.Entry<Object, List<Integer>> direction : directions.entrySet()) {
+            for (List<Integer> group : pack(from, direction.getValue(), Integer.MAX_VALUE)) {
+                List<Text> texts = new ArrayList<>();
+                for (int i : group) {
+                    texts.add(from.get(i));
+                }
 
-        for (int i = 0; i < response.text.length; i++) {
-            translations[i] = new Text(response.text[i], to);
+                requests.add(getResponse("translate", repeat(
+                        "text", texts,
+                        "key", getApiKey(),
+                        "lang", direction.getKey()
+                )).thenAccept(response -> {
+                    // Translations are listed in the same order as the text parameters.
+                    for (int i = 0; i < response.text.size(); i++) {
+                        translations[group.get(i)] =
+                                new Text[]{new Text(response.text.get(i), to)};
+                    }
+                }));
+            }
         }
-        return translations;
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> translations);
     }
 
     @Override
-    protected Language[] identifyImpl(String mysteryText) {
-        String responseBody = getResponseBody(
+    protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+        return getResponse(
                 "detect",
                 "key", getApiKey(),
                 "text", mysteryText
-        );
-        JSONResponse response = new Gson().fromJson(responseBody, JSONResponse.class);
+        ).thenApply(response -> {
+            // Yandex sends an empty code if the text cannot be identified.
+            if (response.lang == null || response.lang.isEmpty()) {
+                return new Language[]{Language.UND};
+            }
+            // The language may have no Language value.
+            Language language = Language.fromCode(response.lang);
+            return language != null ? new Language[]{language} : new Language[0];
+        });
+    }
+
+    @Override
+    protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+        // The detect method only accepts one text per request, so the
+        // requests are sent at the same time.
+        Language[][] results = new Language[mysteryTexts.size()][];
+        List<CompletableFuture<?>> requests = new ArrayList<>();
 
-        if (response.code != okResponse) {
-            throw new TranslationError(response.code);
+        for (int i = 0; i < mysteryTexts.size(); i++) {
+            final int index = i;
+            requests.add(identifyImpl(mysteryTexts.get(i)).thenAccept(languages ->
+                    // A batch lists no languages for a text that cannot be identified.
+                    results[index] = languages.length == 1 && languages[0] == Language.UND ?
+                            new Language[0] : languages));
         }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> results);
+    }
 
-        return new Language[]{Language.valueOf(response.lang.toUpperCase())};
+    @Override
+    protected CompletableFuture<Boolean> hasSupportImpl(final Language from, final Language to) {
+        return getSupport().thenApply(matrix -> matrix.isSupported(from, to));
     }
 
     @Override
-    protected boolean hasSupportImpl(final Language from, final Language to) {
-        String responseBody = getResponseBody(
+    protected CompletableFuture<SupportMatrix> loadSupportImpl() {
+        return post(
                 "getLangs",
-                "key", getApiKey(),
-                "ui", from
-        );
-        JsonObject response = new JsonParser().parse(responseBody).getAsJsonObject();
+                "key", getApiKey()
+        ).thenApply(responseBody -> {
+            // The response only has a code if the request failed.
+            Reply response = decode(responseBody);
+            if (response.code != okResponse || response.dirs == null) {
+                throw new TranslationError(response.code);
+            }
 
-        JsonPrimitive prim = response.getAsJsonPrimitive("code");
-        if (prim != null) {
-            throw new TranslationError(prim.getAsInt());
-        }
+            // Directions are listed as pairs of codes (e.g., en-ru).
+            SupportMatrix matrix = new SupportMatrix();
+            for (String direction : response.dirs) {
+                int split = direction.indexOf('-');
+                if (split < 0) { continue; }
+                Language from = Language.fromCode(direction, 0, split);
+                Language to = Language.fromCode(direction, split + 1, direction.length());
+                // Skip directions that use a language with no Language value.
+                if (from != null && to != null) { matrix.add(from, to); }
+            }
+            return matrix;
+        });
+    }
 
-        return response.getAsJsonObject("langs").has(to.toString());
+    @Override
+    public int getMaxRequestChars() { return maxRequestChars; }
+
+    @Override
+    protected boolean isQuotaError(int code) {
+        // 413 means one request was too large, which waiting will not fix.
+        return code == limitExceeded;
     }
 
-    private String getResponseBody(String path, Object... params) {
-        return HttpRequest.post(
-                getHost() + path,
-                true,
-                params
-        ).body();
+    /**
+     * Sends a request and decodes the response, failing if the service
+     * reported an error.
+     */
+    private CompletableFuture<Reply> getResponse(String path, Object... params) {
+        return post(path, params).thenApply(responseBody -> {
+            Reply response = decode(responseBody);
+            if (response.code != okResponse) {
+                throw new TranslationError(response.code);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Reads the fields of a response. If the body has no code, the HTTP
+     * status is used.
+     */
+    private Reply decode(Transport.Response responseBody) {
+        long start = System.nanoTime();
+        Reply response = new Reply();
+        response.code = responseBody.code();
+
+        try (JsonReader reader = JsonDecoder.open(responseBody)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "code":
+                        response.code = reader.nextInt();
+                        break;
+                    case "lang":
+                        response.lang = reader.nextString();
+                        break;
+                    case "text":
+                        response.text = JsonDecoder.readStrings(reader);
+                        break;
+                    case "dirs":
+                        response.dirs = JsonDecoder.readStrings(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // Errors from proxies may not be JSON, but their status is enough.
+            if (!responseBody.ok()) { throw new TranslationError(responseBody.code(), e); }
+            throw JsonDecoder.malformed(e);
+        } finally {
+            recordParse(responseBody, start);
+        }
+        return response;
     }
 }
@@ -0,0 +1,260 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Tests for the future-returning methods of Translator. */
+public class AsyncTranslatorTest {
+    private final int timeout = 10;
+
+    /** Futures of many calls should combine into the results of each. */
+    @Test
+    public void testFanOut() throws Exception {
+        try (FakeTranslationServer server = new FakeTranslationServer(1)) {
+            server.setLatency(FakeTranslationServer.uniform(0, 20));
+            Translator translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+
+            List<CompletableFuture<Text[]>> translations = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                translations.add(translator.translateAsync(new Text("text " + i), Language.ES));
+            }
+            CompletableFuture.allOf(translations.toArray(new CompletableFuture<?>[0]))
+                    .get(timeout, TimeUnit.SECONDS);
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals("[es] text " + i, translations.get(i).join()[0].toString());
+            }
+
+            Assert.assertTrue(translator.hasSupportAsync(Language.EN, Language.ES)
+                    .get(timeout, TimeUnit.SECONDS));
+            Text[][] batch = translator.translateBatchAsync(
+                    List.of(new Text("a"), new Text("b")), Language.FR)
+                    .get(timeout, TimeUnit.SECONDS);
+            Assert.assertEquals("[fr] b", batch[1][0].toString());
+            translator.shutdown(timeout);
+        }
+    }
+
+    /** A failed call should complete its future with the TranslationError. */
+    @Test
+    public void testServiceError() throws Exception {
+        try (FakeTranslationServer server = new FakeTranslationServer(1)) {
+            server.failNext(1, 400);
+            Translator translator = Translators.get(Key.YANDEX, server.getYandexHost());
+            try {
+                translator.identifyAsync("hola").get(timeout, TimeUnit.SECONDS);
+                Assert.fail("identifyAsync should have failed");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(400, ((TranslationError) e.getCause()).getCode());
+            }
+            translator.shutdown(timeout);
+        }
+    }
+
+    /**
+     * Exceptions that are not TranslationErrors should reach both kinds of
+     * error handling as TranslationErrors that keep the exception as cause.
+     */
+    @Test
+    public void testUnexpectedError() throws Exception {
+        IllegalStateException bug = new IllegalStateException("bug");
+        Transport transport = (url, params) -> {
+            throw bug;
+        };
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost", transport);
+
+        try {
+            translator.translateAsync(new Text("hello"), Language.ES).get(timeout, TimeUnit.SECONDS);
+            Assert.fail("translateAsync should have failed");
+        } catch (ExecutionException e) {
+            TranslationError error = (TranslationError) e.getCause();
+            Assert.assertEquals(TranslationError.UNEXPECTED, error.getCode());
+            Assert.assertSame(bug, error.getCause());
+        }
+
+        AtomicReference<TranslationError> handled = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        translator.translate(new Text("hello"), Language.ES, result -> done.countDown(),
+                error -> {
+                    handled.set(error);
+                    done.countDown();
+                });
+        Assert.assertTrue(done.await(timeout, TimeUnit.SECONDS));
+        Assert.assertEquals(TranslationError.UNEXPECTED, handled.get().getCode());
+        translator.shutdown(timeout);
+    }
+
+    /** Cancelling one future should not affect a call that shares its request. */
+    @Test
+    public void testCancel() throws Exception {
+        CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> response);
+
+        CompletableFuture<Text[]> first = translator.translateAsync(new Text("hello"), Language.ES);
+        CompletableFuture<Text[]> second = translator.translateAsync(new Text("hello"), Language.ES);
+        Assert.assertNotSame(first, second);
+        first.cancel(false);
+
+        response.complete(new Transport.Response(200,
+                "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}"
+                        .getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+        Assert.assertEquals("hola", second.get(timeout, TimeUnit.SECONDS)[0].toString());
+        translator.shutdown(timeout);
+    }
+
+    /** A call that runs out of time should fail and abort its request. */
+    @Test
+    public void testTimeout() throws Exception {
+        CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> response);
+
+        try {
+            translator.translateAsync(new Text("hello"), Language.ES, Priority.STANDARD, 50)
+                    .get(timeout, TimeUnit.SECONDS);
+            Assert.fail("translateAsync should have timed out");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.TIMEOUT, ((TranslationError) e.getCause()).getCode());
+        }
+        awaitCancelled(response);
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * A shared request should only be aborted once every call that shares it
+     * has been cancelled.
+     */
+    @Test
+    public void testCancelAbortsRequest() throws Exception {
+        List<CompletableFuture<Transport.Response>> responses = new ArrayList<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    if (url.endsWith("/languages")) { return unlisted(); }
+                    CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+                    responses.add(response);
+                    return response;
+                });
+
+        CompletableFuture<Text[]> first = translator.translateAsync(new Text("hello"), Language.ES);
+        CompletableFuture<Text[]> second = translator.translateAsync(new Text("hello"), Language.ES);
+        Assert.assertEquals(1, responses.size());
+
+        first.cancel(false);
+        Assert.assertFalse(responses.get(0).isCancelled());
+        second.cancel(false);
+        Assert.assertTrue(responses.get(0).isCancelled());
+
+        // The next identical call sends a new request.
+        translator.translateAsync(new Text("hello"), Language.ES);
+        Assert.assertEquals(2, responses.size());
+        translator.shutdown(0);
+    }
+
+    /**
+     * A call should not join a request that could time out before it does,
+     * but a call with an earlier deadline should join a running request.
+     */
+    @Test
+    public void testCoalescedDeadlines() throws Exception {
+        List<CompletableFuture<Transport.Response>> responses = new ArrayList<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    if (url.endsWith("/languages")) { return unlisted(); }
+                    CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+                    responses.add(response);
+                    return response;
+                });
+
+        CompletableFuture<Text[]> hasty = translator.translateAsync(new Text("hello"), Language.ES,
+                Priority.STANDARD, 50);
+        CompletableFuture<Text[]> patient = translator.translateAsync(new Text("hello"),
+                Language.ES);
+        Assert.assertEquals(2, responses.size());
+        CompletableFuture<Text[]> joining = translator.translateAsync(new Text("hello"),
+                Language.ES, Priority.STANDARD, 5000);
+        Assert.assertEquals(2, responses.size());
+
+        try {
+            hasty.get(timeout, TimeUnit.SECONDS);
+            Assert.fail("The first call should have timed out");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.TIMEOUT, ((TranslationError) e.getCause()).getCode());
+        }
+        Assert.assertFalse(patient.isDone());
+        Assert.assertFalse(responses.get(1).isCancelled());
+
+        responses.get(1).complete(new Transport.Response(200,
+                "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}"
+                        .getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+        Assert.assertEquals("hola", patient.get(timeout, TimeUnit.SECONDS)[0].toString());
+        Assert.assertEquals("hola", joining.get(timeout, TimeUnit.SECONDS)[0].toString());
+        translator.shutdown(timeout);
+    }
+
+    /** A cancelled call should give up its place in the RateLimiter's queue. */
+    @Test
+    public void testCancelQueued() throws Exception {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> new CompletableFuture<>());
+        // Requests the supported directions before they can wait in the limiter.
+        translator.getSupport();
+        RateLimiter limiter = new RateLimiter(1, Double.POSITIVE_INFINITY);
+        limiter.acquire(0);
+        translator.setRateLimiter(limiter);
+
+        CompletableFuture<Text[]> result = translator.translateAsync(new Text("hello"), Language.ES);
+        Assert.assertEquals(1, limiter.getQueuedCount());
+        result.cancel(false);
+        Assert.assertEquals(0, limiter.getQueuedCount());
+        translator.shutdown(0);
+    }
+
+    /** Shutting down should abort calls that are still running. */
+    @Test
+    public void testShutdownAborts() throws Exception {
+        CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> response);
+
+        AtomicReference<TranslationError> handled = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        translator.translate(new Text("hello"), Language.ES, result -> done.countDown(),
+                error -> {
+                    handled.set(error);
+                    done.countDown();
+                });
+        translator.shutdown(0);
+
+        Assert.assertTrue(done.await(timeout, TimeUnit.SECONDS));
+        Assert.assertEquals(TranslationError.CANCELLED, handled.get().getCode());
+        awaitCancelled(response);
+    }
+
+    /** Returns the response of a service that cannot list its directions. */
+    private static CompletableFuture<Transport.Response> unlisted() {
+        return CompletableFuture.completedFuture(
+                new Transport.Response(404, new byte[0], Collections.emptyMap()));
+    }
+
+    /**
+     * Waits for a request to be aborted. A call fails first and then aborts
+     * its requests, so the abort may follow shortly after.
+     */
+    private void awaitCancelled(CompletableFuture<?> request) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        while (!request.isCancelled() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(request.isCancelled());
+    }
+}
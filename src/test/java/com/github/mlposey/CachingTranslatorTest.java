@@ -0,0 +1,183 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Tests for CachingTranslator. */
+public class CachingTranslatorTest {
+    protected Text[] translations;
+    protected Text[][] batchTranslations;
+
+    /** A Translator that counts how often the service would be called. */
+    private static class CountingTranslator extends Translator {
+        int calls;
+
+        CountingTranslator() { super(Key.GOOGLE, "http://localhost"); }
+
+        @Override
+        protected CompletableFuture<Text[]> translateImpl(Text from, Language to) {
+            calls++;
+            return CompletableFuture.completedFuture(
+                    new Text[]{new Text(from + "-" + to, to)});
+        }
+
+        @Override
+        protected CompletableFuture<Text[][]> translateBatchImpl(List<Text> from, Language to) {
+            calls++;
+            Text[][] results = new Text[from.size()][];
+            for (int i = 0; i < from.size(); i++) {
+                results[i] = new Text[]{new Text(from.get(i) + "-" + to, to)};
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+
+        @Override
+        protected CompletableFuture<Language[]> identifyImpl(String mysteryText) {
+            calls++;
+            return CompletableFuture.completedFuture(new Language[]{Language.EN});
+        }
+
+        @Override
+        protected CompletableFuture<Language[][]> identifyBatchImpl(List<String> mysteryTexts) {
+            calls++;
+            Language[][] results = new Language[mysteryTexts.size()][];
+            Arrays.fill(results, new Language[]{Language.EN});
+            return CompletableFuture.completedFuture(results);
+        }
+
+        @Override
+        protected CompletableFuture<Boolean> hasSupportImpl(Language from, Language to) {
+            calls++;
+            return CompletableFuture.completedFuture(true);
+        }
+    }
+
+    /**
+     * Results should be shared between requests for the same text and
+     * direction, and requests for other directions should miss.
+     */
+    @Test
+    public void testTranslateImpl_hitsAndMisses() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 100, 1000, 60);
+
+        translator.translateImpl(new Text("dog", Language.EN), Language.NL).join();
+        translations = translator.translateImpl(new Text("dog", Language.EN), Language.NL).join();
+        translator.translateImpl(new Text("dog", Language.EN), Language.DE).join();
+
+        Assert.assertEquals("dog-nl", translations[0].toString());
+        Assert.assertEquals(2, service.calls);
+        Assert.assertEquals(1, translator.getHitCount());
+        Assert.assertEquals(2, translator.getMissCount());
+    }
+
+    /**
+     * A batch should only send the texts that are not already cached and
+     * still return every result in order.
+     */
+    @Test
+    public void testTranslateBatchImpl_partiallyCached() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 100, 1000, 60);
+
+        translator.translateImpl(new Text("cat"), Language.NL).join();
+        batchTranslations = translator.translateBatchImpl(Arrays.asList(
+                new Text("dog"), new Text("cat"), new Text("bird")), Language.NL).join();
+
+        Assert.assertEquals(2, service.calls);
+        Assert.assertEquals("dog-nl", batchTranslations[0][0].toString());
+        Assert.assertEquals("cat-nl", batchTranslations[1][0].toString());
+        Assert.assertEquals("bird-nl", batchTranslations[2][0].toString());
+    }
+
+    /**
+     * The least recently used result should be evicted once the cache
+     * holds too many entries or characters.
+     */
+    @Test
+    public void testEviction() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 2, 1000, 60);
+
+        translator.translateImpl(new Text("a"), Language.NL).join();
+        translator.translateImpl(new Text("b"), Language.NL).join();
+        translator.translateImpl(new Text("a"), Language.NL).join();
+        translator.translateImpl(new Text("c"), Language.NL).join();
+        Assert.assertEquals(2, translator.size());
+
+        translator.translateImpl(new Text("b"), Language.NL).join();
+        Assert.assertEquals(4, service.calls);
+
+        translator = new CachingTranslator(service, 100, 10, 60);
+        translator.translateImpl(new Text("abc"), Language.NL).join();
+        translator.translateImpl(new Text("def"), Language.NL).join();
+        Assert.assertEquals(1, translator.size());
+    }
+
+    /**
+     * Results should not be used after their time to live has passed.
+     */
+    @Test
+    public void testExpiration() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 100, 1000, 0);
+
+        translator.identifyImpl("test").join();
+        translator.identifyImpl("test").join();
+        translator.hasSupportImpl(Language.EN, Language.RU).join();
+        translator.hasSupportImpl(Language.EN, Language.RU).join();
+
+        Assert.assertEquals(4, service.calls);
+    }
+
+    /**
+     * Texts that are requested once should not evict the ones that are
+     * requested often.
+     */
+    @Test
+    public void testAdmission() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 10, 1000, 60);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 9; i++) {
+                translator.translateImpl(new Text("hot " + i), Language.NL).join();
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            translator.translateImpl(new Text("once " + i), Language.NL).join();
+        }
+        for (int i = 0; i < 9; i++) {
+            translator.translateImpl(new Text("hot " + i), Language.NL).join();
+        }
+
+        Assert.assertEquals(59, service.calls);
+        Assert.assertEquals(10, translator.size());
+    }
+
+    /**
+     * A large cache should be split into segments that together keep every
+     * result, and should share the executor and Transport of its Translator.
+     */
+    @Test
+    public void testSegments() {
+        CountingTranslator service = new CountingTranslator();
+        CachingTranslator translator = new CachingTranslator(service, 4096, 100000, 60);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 1000; i++) {
+                translator.translateImpl(new Text("text " + i), Language.NL).join();
+            }
+        }
+
+        Assert.assertEquals(1000, service.calls);
+        Assert.assertEquals(1000, translator.getHitCount());
+        Assert.assertEquals(1000, translator.size());
+        Assert.assertSame(service.getExecutor(), translator.getExecutor());
+        Assert.assertSame(service.getTransport(), translator.getTransport());
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/** Tests for CircuitBreaker. */
+public class CircuitBreakerTest {
+    private final TranslationError unavailable = new TranslationError(503);
+
+    /**
+     * The breaker should open when too many calls fail, close again after its
+     * probes succeed, and report each change to its listeners.
+     */
+    @Test
+    public void testStates() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 10000, 1.0, 20, 1);
+        List<CircuitBreaker.State> states = new ArrayList<>();
+        breaker.addListener((b, from, to) -> states.add(to));
+
+        for (int i = 0; i < 4; i++) {
+            long permit = breaker.tryAcquire();
+            Assert.assertNotEquals(CircuitBreaker.denied, permit);
+            breaker.record(permit, 0, i % 2 == 0 ? unavailable : null);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(CircuitBreaker.denied, breaker.tryAcquire());
+
+        Thread.sleep(30);
+        long probe = breaker.tryAcquire();
+        Assert.assertNotEquals(CircuitBreaker.denied, probe);
+        // Only one probe is allowed while it is running.
+        Assert.assertEquals(CircuitBreaker.denied, breaker.tryAcquire());
+        breaker.record(probe, 0, null);
+
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(Arrays.asList(CircuitBreaker.State.OPEN,
+                CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), states);
+    }
+
+    /**
+     * Errors caused by the request itself should not open the breaker.
+     */
+    @Test
+    public void testRequestErrors() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 10000, 1.0, 20, 1);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), 0,
+                    new TranslationError(TranslationError.UNSUPPORTED_DIRECTION));
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Slow calls should open the breaker.
+     */
+    @Test
+    public void testSlowCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 1, 1.0, 20, 1);
+        breaker.record(breaker.tryAcquire(), 2000000, null);
+        breaker.record(breaker.tryAcquire(), 2000000, null);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * A probe that never finishes should count as failed once the slow-call
+     * time has passed, so that the breaker can half-open again.
+     */
+    @Test
+    public void testHangingProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, 20, 1.0, 20, 1);
+        List<CircuitBreaker.State> states = new ArrayList<>();
+        breaker.addListener((b, from, to) -> states.add(to));
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+
+        Thread.sleep(30);
+        long hanging = breaker.tryAcquire();
+        Assert.assertNotEquals(CircuitBreaker.denied, hanging);
+        Thread.sleep(30);
+        // The probe is still running, so it is failed and the breaker reopens.
+        Assert.assertEquals(CircuitBreaker.denied, breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(30);
+        long probe = breaker.tryAcquire();
+        // The hanging probe finishing late should not count as a new probe.
+        breaker.record(hanging, 0, null);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.record(probe, 0, null);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(Arrays.asList(CircuitBreaker.State.OPEN,
+                CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.OPEN,
+                CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), states);
+    }
+
+    /**
+     * A call sent while the breaker was closed should not close it when the
+     * call finishes after the breaker half-opened.
+     */
+    @Test
+    public void testStaleCall() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, 10000, 1.0, 20, 1);
+        long stale = breaker.tryAcquire();
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+
+        Thread.sleep(30);
+        long probe = breaker.tryAcquire();
+        breaker.record(stale, 0, null);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.record(probe, 0, null);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * A probe should reopen the breaker if it fails with any error, even one
+     * that does not count against the service while the breaker is closed.
+     */
+    @Test
+    public void testFailedProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, 10000, 1.0, 20, 1);
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+        breaker.record(breaker.tryAcquire(), 0, unavailable);
+
+        Thread.sleep(30);
+        breaker.record(breaker.tryAcquire(), 0, new TranslationError(400));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * Time spent waiting in the RateLimiter should not make a call slow.
+     */
+    @Test
+    public void testQueueingIsNotSlow() {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(
+                        new Transport.Response(200, ("{\"data\":{\"translations\":" +
+                                "[{\"translatedText\":\"hola\"}]}}")
+                                .getBytes(StandardCharsets.UTF_8), Collections.emptyMap())));
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, 50, 1.0, 60000, 1);
+        translator.setCircuitBreaker(Operation.TRANSLATE, breaker);
+        RateLimiter limiter = new RateLimiter(2, Double.POSITIVE_INFINITY);
+        translator.setRateLimiter(limiter);
+
+        for (int i = 0; i < 4; i++) {
+            translator.guarded(Operation.TRANSLATE, () ->
+                    translator.translateImpl(new Text("hello"), Language.ES)).join();
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * A Translator should fail calls with CIRCUIT_OPEN while its breaker is open.
+     */
+    @Test
+    public void testTranslator() {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.failedFuture(unavailable));
+        translator.setCircuitBreaker(Operation.TRANSLATE,
+                new CircuitBreaker(2, 2, 0.5, 10000, 1.0, 60000, 1));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                translator.guarded(Operation.TRANSLATE, () ->
+                        translator.translateImpl(new Text("hello"), Language.ES)).join();
+                Assert.fail("The call should fail");
+            } catch (CompletionException e) {
+                int code = ((TranslationError) e.getCause()).getCode();
+                Assert.assertEquals(i < 2 ? 503 : TranslationError.CIRCUIT_OPEN, code);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for DocumentTranslator and Segmenter. */
+public class DocumentTranslatorTest {
+    private final int timeout = 10;
+
+    /**
+     * Paragraphs should become segments, and whitespace should be kept apart.
+     */
+    @Test
+    public void testParagraphs() throws IOException {
+        List<Segmenter.Segment> segments = segment("\n  First one. Still first.\n\n" +
+                "Second\nparagraph.\r\n \r\nThird.\n", 100);
+        assertSegments(segments, "", "\n  ", "First one. Still first.", "\n\n",
+                "Second\nparagraph.", "\r\n \r\n", "Third.", "\n");
+    }
+
+    /**
+     * Long paragraphs should be split at sentences, then at spaces, and then
+     * anywhere, without exceeding the maximum size.
+     */
+    @Test
+    public void testLongParagraphs() throws IOException {
+        assertSegments(segment("One two. Three four five. Six.", 20),
+                "One two.", " ", "Three four five.", " ", "Six.", "");
+        assertSegments(segment("One two three four", 10),
+                "One two", " ", "three four", "");
+        assertSegments(segment("abcdefghij", 4), "abcd", "", "efgh", "", "ij", "");
+        assertSegments(segment("你好。再见。", 4),
+                "你好。", "", "再见。", "");
+    }
+
+    /**
+     * A document should be translated in order, with its whitespace, using
+     * requests that stay under the limit.
+     */
+    @Test
+    public void testTranslate() throws Exception {
+        StringBuilder document = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            document.append("Sentence number ").append(i).append(".\n\n");
+            expected.append("[es] Sentence number ").append(i).append(".\n\n");
+        }
+
+        try (FakeTranslationServer server = new FakeTranslationServer(1)) {
+            server.setLatency(FakeTranslationServer.uniform(0, 20));
+            Translator translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+
+            StringWriter out = new StringWriter();
+            new DocumentTranslator(translator, 200, 4).translate(
+                    new StringReader(document.toString()), out, Language.ES);
+
+            Assert.assertEquals(expected.toString(), out.toString());
+            // Each request holds as many 19 to 21 character sentences as fit.
+            Assert.assertTrue(server.getRequestCount() >= 200 / 10);
+            Assert.assertTrue(server.getRequestCount() <= 200 / 9 + 1);
+            translator.shutdown(timeout);
+        }
+    }
+
+    /**
+     * A failed request should be reported after the translations before it
+     * have been written.
+     */
+    @Test
+    public void testError() throws Exception {
+        try (FakeTranslationServer server = new FakeTranslationServer(1)) {
+            Translator translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+            translator.setRetryPolicy(null);
+
+            StringWriter out = new StringWriter();
+            // The supported directions are loaded before the failure is injected.
+            translator.getSupport().join();
+            server.failNext(1, 400);
+            try {
+                new DocumentTranslator(translator, 10, 1).translate(
+                        new StringReader("First. Second."), out, Language.ES);
+                Assert.fail("the first request should fail");
+            } catch (TranslationError e) {
+                Assert.assertEquals(400, e.getCode());
+            }
+            Assert.assertEquals("", out.toString());
+            translator.shutdown(timeout);
+        }
+    }
+
+    /**
+     * The requests after a failed one should be cancelled, since their
+     * translations would never be written.
+     */
+    @Test
+    public void testError_cancelsRest() throws Exception {
+        CompletableFuture<Transport.Response> second = new CompletableFuture<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> Arrays.toString(params).contains("First.") ?
+                        CompletableFuture.completedFuture(new Transport.Response(400,
+                                new byte[0], Collections.emptyMap())) :
+                        second);
+        translator.setRetryPolicy(null);
+
+        try {
+            new DocumentTranslator(translator, 10, 2).translate(
+                    new StringReader("First. Second."), new StringWriter(), Language.ES);
+            Assert.fail("the first request should fail");
+        } catch (TranslationError e) {
+            Assert.assertEquals(400, e.getCode());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        while (!second.isCancelled() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(second.isCancelled());
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * A DocumentTranslator must be allowed to send at least one request.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxInFlight() {
+        new DocumentTranslator(new GoogleTranslator(Key.GOOGLE, "http://localhost"), 10, 0);
+    }
+
+    private static List<Segmenter.Segment> segment(String text, int maxChars)
+            throws IOException {
+        // A small read size makes segments cross the ends of reads.
+        Reader reader = new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+        Segmenter segmenter = new Segmenter(reader, maxChars);
+        List<Segmenter.Segment> segments = new ArrayList<>();
+        Segmenter.Segment segment;
+        while ((segment = segmenter.next()) != null) {
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private static void assertSegments(List<Segmenter.Segment> segments, String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (Segmenter.Segment segment : segments) {
+            actual.add(segment.text);
+            actual.add(segment.separator);
+        }
+        Assert.assertEquals(List.of(expected), actual);
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+
+/** Tests for GoogleTranslator that use a FakeTranslationServer. */
+public class FakeGoogleTranslatorTest extends TranslatorTest {
+    private FakeTranslationServer server;
+
+    public FakeGoogleTranslatorTest() {
+        super(Key.GOOGLE);
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = startFakeServer();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Override
+    protected Translator newTranslator() {
+        return Translators.get(key, server.getGoogleHost());
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+/** Tests for FakeTranslationServer. */
+public class FakeTranslationServerTest {
+    private FakeTranslationServer server;
+    private Translator translator;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTranslationServer();
+        translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+        translator.setRetryPolicy(null);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Injected errors should reach the client with their code and be counted.
+     */
+    @Test
+    public void testFailNext() {
+        server.failNext(1, 503);
+        Assert.assertEquals(503, codeOf(translator));
+
+        Text[] result = translator.translateImpl(new Text("dog"), Language.NL).join();
+        Assert.assertEquals("[nl] dog", result[0].toString());
+        Assert.assertEquals(2, server.getRequestCount());
+        Assert.assertEquals(1, server.getErrorCount());
+    }
+
+    /**
+     * Requests over the rate limit should be rejected with Google's quota code.
+     */
+    @Test
+    public void testRateLimit() {
+        server.setRateLimit(1);
+        translator.translateImpl(new Text("dog"), Language.NL).join();
+        Assert.assertEquals(429, codeOf(translator));
+        Assert.assertEquals(1, server.getRateLimitedCount());
+    }
+
+    /**
+     * Responses should not arrive before the configured latency.
+     */
+    @Test
+    public void testLatency() {
+        server.setLatency(FakeTranslationServer.fixed(50));
+
+        long start = System.nanoTime();
+        translator.translateImpl(new Text("dog"), Language.NL).join();
+        Assert.assertTrue(System.nanoTime() - start >= 50000000);
+    }
+
+    /**
+     * Translating alone should load the supported directions, after which
+     * unsupported directions are rejected without sending a request.
+     */
+    @Test
+    public void testUnsupportedDirection() throws InterruptedException {
+        server.setLanguages("en", "nl");
+        translator.translateAsync(new Text("dog"), Language.NL).join();
+        // The directions are requested in the background by the translation.
+        while (server.getRequestCount() < 2) { Thread.sleep(10); }
+        translator.getSupport().join();
+
+        try {
+            translator.translateAsync(new Text("dog"), Language.RU).join();
+            Assert.fail("The translation should fail");
+        } catch (CompletionException e) {
+            Assert.assertEquals(TranslationError.UNSUPPORTED_DIRECTION,
+                    ((TranslationError) e.getCause()).getCode());
+        }
+        Assert.assertEquals(2, server.getRequestCount());
+    }
+
+    private int codeOf(Translator translator) {
+        try {
+            translator.translateImpl(new Text("dog"), Language.NL).join();
+            Assert.fail("The request should fail");
+        } catch (CompletionException e) {
+            return ((TranslationError) e.getCause()).getCode();
+        }
+        return 0;
+    }
+}
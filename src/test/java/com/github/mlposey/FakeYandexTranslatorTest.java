@@ -0,0 +1,51 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Tests for YandexTranslator that use a FakeTranslationServer. */
+public class FakeYandexTranslatorTest extends TranslatorTest {
+    private FakeTranslationServer server;
+
+    public FakeYandexTranslatorTest() {
+        super(Key.YANDEX);
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = startFakeServer();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Override
+    protected Translator newTranslator() {
+        return Translators.get(key, server.getYandexHost());
+    }
+
+    /**
+     * A text that cannot be identified should get an empty result without
+     * failing the rest of the batch.
+     */
+    @Test
+    public void testIdentifyBatch_undetermined() throws InterruptedException {
+        batchLangs = null;
+
+        Translator translator = newTranslator();
+        translator.identifyBatch(Arrays.asList("the dog is sleeping", "12345 ;)"),
+                l -> batchLangs = l, err -> code = err.getCode());
+        translator.shutdown(timeout);
+
+        Assert.assertNotNull(batchLangs);
+        Assert.assertEquals(Language.EN, batchLangs[0][0]);
+        Assert.assertEquals(0, batchLangs[1].length);
+    }
+}
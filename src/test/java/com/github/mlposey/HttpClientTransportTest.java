@@ -0,0 +1,142 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/** Tests for HttpClientTransport. */
+public class HttpClientTransportTest {
+    private FakeTranslationServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTranslationServer(1);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * A compact transport should get the same results as a plain one while
+     * sending and receiving fewer bytes, and both should count their bytes.
+     */
+    @Test
+    public void testCompact() {
+        List<Text> texts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            texts.add(new Text("The quick brown fox jumps over the lazy dog " + i));
+        }
+
+        OperationMetrics plain = translate(new HttpClientTransport(false), texts);
+        OperationMetrics compact = translate(new HttpClientTransport(true), texts);
+
+        Assert.assertTrue(plain.getBytesSent() > 0);
+        Assert.assertTrue(plain.getBytesReceived() > 0);
+        Assert.assertTrue(compact.getBytesSent() * 3 < plain.getBytesSent());
+        Assert.assertTrue(compact.getBytesReceived() * 3 < plain.getBytesReceived());
+    }
+
+    /** Small requests should be sent as uncompressed form bodies. */
+    @Test
+    public void testSmallRequest() {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, server.getGoogleHost(),
+                new HttpClientTransport(true));
+        Transport.Response response = translator.post("",
+                "q", "dog", "target", "nl", "fields", "data/translations/translatedText").join();
+
+        Assert.assertTrue(response.ok());
+        Assert.assertEquals("{\"data\":{\"translations\":[{\"translatedText\":\"[nl] dog\"}]}}",
+                response.body());
+        Assert.assertEquals(HttpClientTransport.encode("q", "dog", "target", "nl",
+                "fields", "data/translations/translatedText").length(), response.bytesSent());
+    }
+
+    /**
+     * A piece of the longest size in a script that percent-encoding inflates
+     * should be sent in the body rather than the URL.
+     */
+    @Test
+    public void testNonLatinRequest() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) { text.append('я'); }
+
+        HttpServer echo = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        int[] urlLength = {0};
+        echo.createContext("/", exchange -> {
+            urlLength[0] = exchange.getRequestURI().toString().length();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        echo.start();
+        try {
+            Transport.Response response = new HttpClientTransport(false).post(
+                    "http://" + echo.getAddress().getHostString() + ':' +
+                            echo.getAddress().getPort() + "/translate",
+                    "text", text.toString(), "lang", "en").join();
+
+            Assert.assertTrue(response.ok());
+            Assert.assertTrue(urlLength[0] < 100);
+            // Each letter is two bytes of UTF-8, which are encoded as six characters.
+            Assert.assertTrue(response.bytesSent() > 30000);
+        } finally {
+            echo.stop(0);
+        }
+    }
+
+    /**
+     * A request that is not answered in time should fail as a network error,
+     * which is retried and counted by circuit breakers.
+     */
+    @Test
+    public void testTimeout() {
+        server.setLatency(FakeTranslationServer.uniform(1000, 1000));
+        try {
+            new HttpClientTransport().post(server.getGoogleHost(), Duration.ofMillis(100),
+                    "q", "dog", "target", "nl").join();
+            Assert.fail("The request should have timed out");
+        } catch (CompletionException e) {
+            TranslationError error = (TranslationError) e.getCause();
+            Assert.assertEquals(TranslationError.NETWORK_ERROR, error.getCode());
+            Assert.assertTrue(error.getCause() instanceof HttpTimeoutException);
+        }
+    }
+
+    /** A call whose deadline passes during its request should time out. */
+    @Test
+    public void testCallDeadline() {
+        server.setLatency(FakeTranslationServer.uniform(1000, 1000));
+        Translator translator = new GoogleTranslator(Key.GOOGLE, server.getGoogleHost(),
+                new HttpClientTransport());
+        try {
+            translator.translateAsync(new Text("dog"), Language.NL, Priority.STANDARD, 200).join();
+            Assert.fail("The call should have timed out");
+        } catch (CompletionException e) {
+            Assert.assertEquals(TranslationError.TIMEOUT, ((TranslationError) e.getCause()).getCode());
+        }
+    }
+
+    private OperationMetrics translate(Transport transport, List<Text> texts) {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, server.getGoogleHost(), transport);
+        Text[][] translations = translator.translateBatchAsync(texts, Language.ES).join();
+        for (int i = 0; i < texts.size(); i++) {
+            Assert.assertEquals("[es] " + texts.get(i), translations[i][0].toString());
+        }
+        return translator.getMetrics().get(Operation.TRANSLATE);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/** Tests for the streaming decoding of service responses. */
+public class JsonDecoderTest {
+    /** Returns a Transport that answers every request with 'status' and 'body'. */
+    private Transport answer(int status, String body) {
+        return (url, params) -> CompletableFuture.completedFuture(new Transport.Response(
+                status, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+    }
+
+    /**
+     * Google translations should be read in order, and unknown fields skipped.
+     */
+    @Test
+    public void testGoogleTranslate() {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                answer(200, "{\"data\":{\"translations\":[" +
+                        "{\"translatedText\":\"hola\",\"detectedSourceLanguage\":\"en\"}," +
+                        "{\"detectedSourceLanguage\":{\"nested\":[1,2]},\"translatedText\":\"adiós\"}" +
+                        "]},\"extra\":true}"));
+
+        Text[][] results = translator.translateBatchImpl(
+                Arrays.asList(new Text("hello"), new Text("goodbye")), Language.ES).join();
+        Assert.assertEquals("hola", results[0][0].toString());
+        Assert.assertEquals("adiós", results[1][0].toString());
+    }
+
+    /**
+     * Texts Google cannot identify should have no languages.
+     */
+    @Test
+    public void testGoogleDetect() {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                answer(200, "{\"data\":{\"detections\":[" +
+                        "[{\"language\":\"de\",\"isReliable\":false,\"confidence\":0.9}]," +
+                        "[{\"language\":\"und\",\"isReliable\":false,\"confidence\":1}]]}}"));
+
+        Language[][] results = translator.identifyBatchImpl(
+                Arrays.asList("der Hund", "???")).join();
+        Assert.assertArrayEquals(new Language[]{Language.DE}, results[0]);
+        Assert.assertEquals(0, results[1].length);
+    }
+
+    /**
+     * Yandex translations and supported directions should be read.
+     */
+    @Test
+    public void testYandex() {
+        Translator translator = new YandexTranslator(Key.YANDEX, "http://localhost/",
+                answer(200, "{\"code\":200,\"lang\":\"en-ru\",\"text\":[\"привет\"]," +
+                        "\"dirs\":[\"en-ru\",\"xx-en\"]}"));
+
+        Text[] result = translator.translateImpl(new Text("hello"), Language.RU).join();
+        Assert.assertEquals("привет", result[0].toString());
+
+        SupportMatrix matrix = translator.loadSupportImpl().join();
+        Assert.assertTrue(matrix.isSupported(Language.EN, Language.RU));
+        Assert.assertFalse(matrix.isSupported(Language.RU, Language.EN));
+    }
+
+    /**
+     * Yandex errors should use the code in the body, or the HTTP status if
+     * the body is not JSON.
+     */
+    @Test
+    public void testYandexErrors() {
+        Translator translator = new YandexTranslator(Key.YANDEX, "http://localhost/",
+                answer(401, "{\"code\":401,\"message\":\"API key is invalid\"}"));
+        translator.setRetryPolicy(null);
+        assertCode(401, translator);
+
+        translator = new YandexTranslator(Key.YANDEX, "http://localhost/",
+                answer(502, "<html>Bad Gateway</html>"));
+        translator.setRetryPolicy(null);
+        assertCode(502, translator);
+    }
+
+    /**
+     * The UTF-8 reader should decode like String does, even when surrogate
+     * pairs are split across reads and bytes are malformed.
+     */
+    @Test
+    public void testUtf8Reader() throws Exception {
+        byte[][] inputs = {
+                "plain ascii".getBytes(StandardCharsets.UTF_8),
+                "adiós привет 你好 \uD83D\uDE00!".getBytes(StandardCharsets.UTF_8),
+                {'a', (byte) 0xc3, 'b', (byte) 0xe4, (byte) 0xbd, (byte) 0xff, (byte) 0xed,
+                        (byte) 0xa0, (byte) 0x80, (byte) 0xf0, (byte) 0x9f}
+        };
+        for (byte[] input : inputs) {
+            for (int size = 1; size <= 3; size++) {
+                JsonDecoder.Utf8Reader reader = new JsonDecoder.Utf8Reader(input);
+                StringBuilder decoded = new StringBuilder();
+                char[] buffer = new char[size];
+                for (int n; (n = reader.read(buffer, 0, size)) != -1; ) {
+                    decoded.append(buffer, 0, n);
+                }
+                Assert.assertEquals(new String(input, StandardCharsets.UTF_8),
+                        decoded.toString());
+            }
+        }
+    }
+
+    private void assertCode(int code, Translator translator) {
+        try {
+            translator.translateImpl(new Text("hello"), Language.RU).join();
+            Assert.fail("The request should fail");
+        } catch (CompletionException e) {
+            Assert.assertEquals(code, ((TranslationError) e.getCause()).getCode());
+        }
+    }
+}
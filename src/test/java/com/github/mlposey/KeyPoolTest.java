@@ -0,0 +1,163 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for KeyPool. */
+public class KeyPoolTest {
+    private final int timeout = 10;
+    private final String translation =
+            "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}";
+
+    private final Map<String, AtomicInteger> uses = new ConcurrentHashMap<>();
+
+    /** Returns the value of the key parameter and counts its use. */
+    private String useKey(Object[] params) {
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (params[i].equals("key")) {
+                String key = params[i + 1].toString();
+                uses.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private Transport.Response ok() {
+        return new Transport.Response(200, translation.getBytes(StandardCharsets.UTF_8),
+                Collections.emptyMap());
+    }
+
+    /** Concurrent requests should be spread evenly across the keys. */
+    @Test
+    public void testSpread() throws Exception {
+        List<CompletableFuture<Transport.Response>> responses = new ArrayList<>();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    // The supported directions are not under test.
+                    if (url.endsWith("/languages")) {
+                        return CompletableFuture.completedFuture(
+                                new Transport.Response(404, new byte[0], Collections.emptyMap()));
+                    }
+                    useKey(params);
+                    CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+                    synchronized (responses) { responses.add(response); }
+                    return response;
+                });
+        KeyPool pool = new KeyPool(Arrays.asList("a", "b", "c"));
+        translator.setKeyPool(pool);
+
+        List<CompletableFuture<Text[]>> translations = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            translations.add(translator.translateAsync(new Text("text " + i), Language.ES));
+        }
+        Assert.assertEquals(10, uses.get("a").get());
+        Assert.assertEquals(10, uses.get("b").get());
+        Assert.assertEquals(10, uses.get("c").get());
+
+        synchronized (responses) {
+            for (CompletableFuture<Transport.Response> response : responses) {
+                response.complete(ok());
+            }
+        }
+        for (CompletableFuture<Text[]> result : translations) {
+            Assert.assertEquals("hola", result.get(timeout, TimeUnit.SECONDS)[0].toString());
+        }
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * A key that gets a quota error should not be used until the service's
+     * Retry-After time has passed.
+     */
+    @Test
+    public void testQuarantine() throws Exception {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(useKey(params).equals("b") ?
+                        new Transport.Response(429, new byte[0],
+                                Collections.singletonMap("retry-after",
+                                        Collections.singletonList("1"))) :
+                        ok()));
+        translator.setRetryPolicy(null);
+        KeyPool pool = new KeyPool(Arrays.asList("a", "b", "c"));
+        translator.setKeyPool(pool);
+
+        int failures = 0;
+        for (int i = 0; i < 30; i++) {
+            try {
+                translator.translateAsync(new Text("text " + i), Language.ES)
+                        .get(timeout, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        Assert.assertEquals(1, failures);
+        Assert.assertEquals(1, uses.get("b").get());
+        Assert.assertEquals(2, pool.getAvailableCount());
+
+        Thread.sleep(1100);
+        Assert.assertEquals(3, pool.getAvailableCount());
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * A quota error on one key should not slow down the other keys, but the
+     * rate should be cut once every key has run out.
+     */
+    @Test
+    public void testQuotaKeepsRate() throws Exception {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(useKey(params).equals("b") ?
+                        new Transport.Response(429, new byte[0], Collections.emptyMap()) :
+                        ok()));
+        translator.setRetryPolicy(null);
+        RateLimiter limiter = new RateLimiter(100, Double.POSITIVE_INFINITY);
+        translator.setRateLimiter(limiter);
+        translator.setKeyPool(new KeyPool(Arrays.asList("a", "b", "c")));
+
+        for (int i = 0; i < 6; i++) {
+            translator.translateAsync(new Text("text " + i), Language.ES)
+                    .handle((result, ex) -> null).get(timeout, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(1, uses.get("b").get());
+        Assert.assertEquals(100, limiter.getRequestRate(), 0.001);
+        translator.shutdown(timeout);
+
+        Translator exhausted = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(
+                        new Transport.Response(429, new byte[0], Collections.emptyMap())));
+        exhausted.setRetryPolicy(null);
+        exhausted.setRateLimiter(limiter);
+        exhausted.setKeyPool(new KeyPool(Collections.singletonList("d")));
+        exhausted.translateAsync(new Text("text"), Language.ES)
+                .handle((result, ex) -> null).get(timeout, TimeUnit.SECONDS);
+        Assert.assertEquals(50, limiter.getRequestRate(), 0.001);
+        exhausted.shutdown(timeout);
+    }
+
+    /** Keys should be read from a file, skipping comments and blank lines. */
+    @Test
+    public void testFromFile() throws IOException {
+        Path file = Files.createTempFile("keys", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# Google keys", "first", "", "  second  "));
+            Assert.assertEquals(2, KeyPool.fromFile(file).getKeyCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Tests for LanguageDetector. */
+public class LanguageDetectorTest {
+    private final int timeout = 10;
+    private final LanguageDetector detector = new LanguageDetector();
+
+    /**
+     * Unambiguous sentences should be identified in many scripts.
+     */
+    @Test
+    public void testDetect() {
+        Assert.assertEquals(Language.EN,
+                detector.detect("The quick brown fox jumps over the lazy dog"));
+        Assert.assertEquals(Language.DE,
+                detector.detect("Der schnelle braune Fuchs springt über den faulen Hund"));
+        Assert.assertEquals(Language.FR, detector.detect("Je voudrais un café, s'il vous plaît."));
+        Assert.assertEquals(Language.ES,
+                detector.detect("¿Dónde está la biblioteca? Necesito estudiar."));
+        Assert.assertEquals(Language.PL, detector.detect("Nie wiem, co mam teraz zrobić."));
+        Assert.assertEquals(Language.UK, detector.detect("Я не знаю, що робити далі."));
+        Assert.assertEquals(Language.JA, detector.detect("今日はとても暑いですね。"));
+        Assert.assertEquals(Language.ZH, detector.detect("我今天很忙，明天再说吧。"));
+        Assert.assertEquals(Language.KO, detector.detect("오늘 날씨가 정말 좋네요."));
+        Assert.assertEquals(Language.EL, detector.detect("Δεν ξέρω τι να κάνω τώρα."));
+    }
+
+    /**
+     * Short texts and texts without letters should not be identified.
+     */
+    @Test
+    public void testUnsure() {
+        Assert.assertNull(detector.detect("ok"));
+        Assert.assertNull(detector.detect("hello"));
+        Assert.assertNull(detector.detect("123 456"));
+        Assert.assertNull(detector.detect(""));
+
+        // A lower threshold accepts less certain guesses.
+        Assert.assertNotNull(new LanguageDetector(0).detect("ok"));
+    }
+
+    /**
+     * A Translator should only ask the service about texts the detector is
+     * unsure of.
+     */
+    @Test
+    public void testTranslator() throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger texts = new AtomicInteger();
+        String detection = "{\"data\":{\"detections\":[[{\"language\":\"en\"}]]}}";
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    requests.incrementAndGet();
+                    for (int i = 0; i < params.length; i += 2) {
+                        if (params[i].equals("q")) { texts.incrementAndGet(); }
+                    }
+                    return CompletableFuture.completedFuture(new Transport.Response(200,
+                            detection.getBytes(StandardCharsets.UTF_8),
+                            Collections.emptyMap()));
+                });
+        translator.setLanguageDetector(detector);
+
+        AtomicReference<Language[][]> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+        translator.identify("Der schnelle braune Fuchs springt über den faulen Hund",
+                languages -> {
+                    Assert.assertArrayEquals(new Language[] {Language.DE}, languages);
+                    done.countDown();
+                });
+        translator.identifyBatch(Arrays.asList("Je voudrais un café, s'il vous plaît.", "ok"),
+                languages -> {
+                    result.set(languages);
+                    done.countDown();
+                });
+        Assert.assertTrue(done.await(timeout, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, texts.get());
+        Assert.assertArrayEquals(new Language[] {Language.FR}, result.get()[0]);
+        Assert.assertArrayEquals(new Language[] {Language.EN}, result.get()[1]);
+        translator.shutdown(timeout);
+    }
+}
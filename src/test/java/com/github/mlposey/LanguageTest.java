@@ -0,0 +1,48 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests for Language. */
+public class LanguageTest {
+    /** Every language should be found by its own code. */
+    @Test
+    public void testRoundTrip() {
+        for (Language language : Language.values()) {
+            Assert.assertSame(language, Language.fromCode(language.toString()));
+        }
+    }
+
+    /**
+     * Codes should be matched without regard to case or separator, obsolete
+     * codes should be recognized, and unknown codes should give null.
+     */
+    @Test
+    public void testFromCode() {
+        Assert.assertSame(Language.EN, Language.fromCode("EN"));
+        Assert.assertSame(Language.ZH_TW, Language.fromCode("zh-TW"));
+        Assert.assertSame(Language.ZH_TW, Language.fromCode("zh_tw"));
+        Assert.assertSame(Language.SR_LATN, Language.fromCode("sr-Latn"));
+        Assert.assertSame(Language.UND, Language.fromCode("und"));
+        Assert.assertSame(Language.HE, Language.fromCode("iw"));
+        Assert.assertSame(Language.ZH_CN, Language.fromCode("zh-Hans"));
+        Assert.assertSame(Language.RU, Language.fromCode("en-ru", 3, 5));
+
+        Assert.assertNull(Language.fromCode("haw"));
+        Assert.assertNull(Language.fromCode(""));
+        Assert.assertNull(Language.fromCode("én"));
+    }
+
+    /** Codes, bases, and pairs should use BCP 47 case. */
+    @Test
+    public void testCodes() {
+        Assert.assertEquals("en", Language.EN.toString());
+        Assert.assertEquals("zh-TW", Language.ZH_TW.toString());
+        Assert.assertEquals("sr-Latn", Language.SR_LATN.toString());
+        Assert.assertSame(Language.ZH, Language.ZH_TW.getBase());
+        Assert.assertSame(Language.EN, Language.EN.getBase());
+
+        Assert.assertEquals("en-ru", Language.EN.concat(Language.RU));
+        Assert.assertSame(Language.EN.concat(Language.RU), Language.EN.concat(Language.RU));
+    }
+}
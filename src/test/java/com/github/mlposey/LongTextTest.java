@@ -0,0 +1,104 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Tests for the splitting of texts that are too long for one request. */
+public class LongTextTest {
+    private final int timeout = 10;
+    private FakeTranslationServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new FakeTranslationServer(1);
+        server.setLatency(FakeTranslationServer.uniform(0, 20));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    /**
+     * A long text should be translated in pieces that each fit in a request,
+     * and the pieces should be joined in order with their whitespace.
+     */
+    @Test
+    public void testTranslate() {
+        // Six paragraphs are too long for either service.
+        String paragraph = repeat("This is a sentence. ", 100).trim();
+        String text = repeat(paragraph + "\n\n", 6).trim();
+        String expected = repeat("[es] " + paragraph + "\n\n", 6).trim();
+
+        Translator google = Translators.get(Key.GOOGLE, server.getGoogleHost());
+        Text[] translations = google.translateImpl(new Text(text), Language.ES).join();
+        Assert.assertEquals(expected, translations[0].toString());
+        Assert.assertEquals(Language.ES, translations[0].getLanguage());
+        Assert.assertEquals(6, server.getRequestCount());
+
+        // Yandex accepts twice as much text, but splits at the same paragraphs.
+        server.resetCounters();
+        Translator yandex = Translators.get(Key.YANDEX, server.getYandexHost());
+        translations = yandex.translateImpl(new Text(text), Language.ES).join();
+        Assert.assertEquals(expected, translations[0].toString());
+        Assert.assertEquals(6, server.getRequestCount());
+    }
+
+    /**
+     * A batch should keep each request under the limit and split texts that
+     * are too long on their own.
+     */
+    @Test
+    public void testTranslateBatch() {
+        String sentence = repeat("word ", 600).trim();
+        String longText = sentence + ". " + sentence + ".";
+
+        for (Translator translator : Arrays.asList(
+                Translators.get(Key.GOOGLE, server.getGoogleHost()),
+                Translators.get(Key.YANDEX, server.getYandexHost()))) {
+            Text[][] translations = translator.translateBatchImpl(Arrays.asList(
+                    new Text(sentence), new Text(longText), new Text(sentence),
+                    new Text(sentence)), Language.ES).join();
+
+            Assert.assertEquals("[es] " + sentence, translations[0][0].toString());
+            Assert.assertEquals(translator.getMaxRequestChars() < longText.length() ?
+                            "[es] " + sentence + ". [es] " + sentence + "." :
+                            "[es] " + longText,
+                    translations[1][0].toString());
+            Assert.assertEquals("[es] " + sentence, translations[3][0].toString());
+        }
+        Assert.assertEquals(0, server.getErrorCount());
+    }
+
+    /**
+     * An identify batch should be packed into requests that each stay under
+     * the limit.
+     */
+    @Test
+    public void testIdentifyBatch() {
+        String text = repeat("word ", 600).trim();
+
+        Translator google = Translators.get(Key.GOOGLE, server.getGoogleHost());
+        Language[][] results = google.identifyBatchImpl(
+                Arrays.asList(text, text, "word", text)).join();
+        Assert.assertEquals(4, results.length);
+        for (Language[] languages : results) {
+            Assert.assertNotNull(languages);
+        }
+        Assert.assertEquals(3, server.getRequestCount());
+        Assert.assertEquals(0, server.getErrorCount());
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(text);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for RateLimiter. */
+public class RateLimiterTest {
+    protected final int timeout = 10;
+
+    /**
+     * Requests beyond the budget should wait for tokens instead of failing.
+     */
+    @Test
+    public void testQueue() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(limiter.acquire(0).isDone());
+        }
+        CompletableFuture<Void> waiting = limiter.acquire(0);
+        Assert.assertFalse(waiting.isDone());
+        Assert.assertEquals(1, limiter.getQueuedCount());
+
+        waiting.get(timeout, TimeUnit.SECONDS);
+        Assert.assertEquals(0, limiter.getQueuedCount());
+    }
+
+    /**
+     * A request should wait until there are enough characters for it.
+     */
+    @Test
+    public void testChars() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, 100);
+
+        Assert.assertTrue(limiter.acquire(80).isDone());
+        CompletableFuture<Void> waiting = limiter.acquire(80);
+        Assert.assertFalse(waiting.isDone());
+        waiting.get(timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cancelling the request at the head of the queue should let the ones
+     * behind it go as soon as there are tokens for them.
+     */
+    @Test
+    public void testCancelHead() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, 100);
+
+        Assert.assertTrue(limiter.acquire(100).isDone());
+        CompletableFuture<Void> large = limiter.acquire(100);
+        CompletableFuture<Void> small = limiter.acquire(10);
+        large.cancel(false);
+        // The large request would have waited a second.
+        small.get(500, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(0, limiter.getQueuedCount());
+    }
+
+    /**
+     * Quota errors should halve the rate, but only once for a burst of them.
+     */
+    @Test
+    public void testQuotaError() {
+        RateLimiter limiter = new RateLimiter(8, Double.POSITIVE_INFINITY);
+
+        limiter.recordQuotaError();
+        limiter.recordQuotaError();
+        Assert.assertEquals(4, limiter.getRequestRate(), 0.001);
+
+        // The rate only grows back after a second of successes.
+        limiter.recordSuccess();
+        Assert.assertEquals(4, limiter.getRequestRate(), 0.001);
+    }
+
+    /**
+     * Waiting lanes should share the rate by weight, without starving the
+     * lighter one.
+     */
+    @Test
+    public void testWeightedFair() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < 10; i++) { limiter.acquire(0); }
+
+        List<Priority> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            waiting.add(limiter.acquire(0, Priority.BULK).thenRun(() -> order.add(Priority.BULK)));
+        }
+        for (int i = 0; i < 10; i++) {
+            waiting.add(limiter.acquire(0, Priority.INTERACTIVE)
+                    .thenRun(() -> order.add(Priority.INTERACTIVE)));
+        }
+        Assert.assertEquals(10, limiter.getQueuedCount(Priority.BULK));
+
+        CompletableFuture.allOf(waiting.toArray(new CompletableFuture<?>[0]))
+                .get(timeout, TimeUnit.SECONDS);
+        Assert.assertEquals(8, Collections.frequency(order.subList(0, 9), Priority.INTERACTIVE));
+        Assert.assertTrue(order.subList(0, 9).contains(Priority.BULK));
+    }
+
+    /** Reserved tokens should only be used by interactive requests. */
+    @Test
+    public void testReservedShare() {
+        RateLimiter limiter = new RateLimiter(10, Double.POSITIVE_INFINITY);
+        limiter.setReservedShare(0.5);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.acquire(0).isDone());
+        }
+        Assert.assertFalse(limiter.acquire(0, Priority.BULK).isDone());
+        Assert.assertTrue(limiter.acquire(0, Priority.INTERACTIVE).isDone());
+    }
+
+    /**
+     * A request that would wait longer than its priority allows should fail
+     * right away instead of being queued.
+     */
+    @Test
+    public void testShed() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, Double.POSITIVE_INFINITY);
+        limiter.setMaxWait(Priority.BULK, 250);
+        for (int i = 0; i < 10; i++) { limiter.acquire(0); }
+
+        CompletableFuture<Void> first = limiter.acquire(0, Priority.BULK);
+        CompletableFuture<Void> second = limiter.acquire(0, Priority.BULK);
+        CompletableFuture<Void> shed = limiter.acquire(0, Priority.BULK);
+        Assert.assertTrue(shed.isCompletedExceptionally());
+        Assert.assertEquals(2, limiter.getQueuedCount());
+        try {
+            shed.get();
+            Assert.fail("The request should have been shed");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.SHED, ((TranslationError) e.getCause()).getCode());
+        }
+
+        // An interactive request goes first, so the last bulk request now
+        // waits too long and is shed from the queue.
+        CompletableFuture<Void> interactive = limiter.acquire(0, Priority.INTERACTIVE);
+        interactive.get(timeout, TimeUnit.SECONDS);
+        first.get(timeout, TimeUnit.SECONDS);
+        try {
+            second.get(timeout, TimeUnit.SECONDS);
+            Assert.fail("The queued request should have been shed");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.SHED, ((TranslationError) e.getCause()).getCode());
+        }
+    }
+
+    /**
+     * A request should fail once its deadline passes, even if the request
+     * ahead of it has no deadline and is still waiting.
+     */
+    @Test
+    public void testExpiryBehindHead() throws Exception {
+        RateLimiter limiter = new RateLimiter(2, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < 2; i++) { limiter.acquire(0); }
+
+        CompletableFuture<Void> head = limiter.acquire(0);
+        long start = System.nanoTime();
+        CompletableFuture<Void> behind = limiter.acquire(0, Priority.STANDARD, 1100);
+        // Halving the rate pushes both requests back, so the one behind
+        // cannot be sent before its deadline.
+        limiter.recordQuotaError();
+
+        try {
+            behind.get(timeout, TimeUnit.SECONDS);
+            Assert.fail("The request should have timed out");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.TIMEOUT,
+                    ((TranslationError) e.getCause()).getCode());
+        }
+        // It would be sent after two seconds if it were only checked at the head.
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1700));
+        head.get(timeout, TimeUnit.SECONDS);
+    }
+
+    /** A Translator should fail a shed call with the shed code. */
+    @Test
+    public void testShedCall() throws Exception {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> new CompletableFuture<>());
+        // Requests the supported directions before they can wait in the limiter.
+        translator.getSupport();
+        RateLimiter limiter = new RateLimiter(1, Double.POSITIVE_INFINITY);
+        limiter.setMaxWait(Priority.BULK, 0);
+        limiter.acquire(0);
+        translator.setRateLimiter(limiter);
+
+        try {
+            translator.translateAsync(new Text("hello"), Language.ES, Priority.BULK)
+                    .get(timeout, TimeUnit.SECONDS);
+            Assert.fail("The call should have been shed");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(TranslationError.SHED, ((TranslationError) e.getCause()).getCode());
+        }
+        Assert.assertEquals(0, limiter.getQueuedCount());
+    }
+}
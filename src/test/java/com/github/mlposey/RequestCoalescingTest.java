@@ -0,0 +1,115 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for the sharing of requests between identical Translator calls. */
+public class RequestCoalescingTest {
+    private final int timeout = 10;
+    private final String translation =
+            "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}";
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CompletableFuture<Transport.Response> response = new CompletableFuture<>();
+    private final Transport transport = (url, params) -> {
+        // The supported directions are not shared between calls.
+        if (url.endsWith("/languages")) {
+            return CompletableFuture.completedFuture(
+                    new Transport.Response(404, new byte[0], Collections.emptyMap()));
+        }
+        requests.incrementAndGet();
+        return response;
+    };
+
+    /**
+     * Identical calls made while a request is running should share it, and
+     * calls made after it finished should send a new one.
+     */
+    @Test
+    public void testIdenticalCalls() throws InterruptedException {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost", transport);
+        int callCount = 20;
+        CountDownLatch done = new CountDownLatch(callCount);
+        for (int i = 0; i < callCount; i++) {
+            translator.translate(new Text("hello"), Language.ES, result -> {
+                Assert.assertEquals("hola", result[0].toString());
+                done.countDown();
+            });
+        }
+        Assert.assertEquals(1, requests.get());
+
+        response.complete(new Transport.Response(200,
+                translation.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+        Assert.assertTrue(done.await(timeout, TimeUnit.SECONDS));
+
+        CountDownLatch later = new CountDownLatch(1);
+        translator.translate(new Text("hello"), Language.ES, result -> later.countDown());
+        Assert.assertTrue(later.await(timeout, TimeUnit.SECONDS));
+        Assert.assertEquals(2, requests.get());
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * Calls that differ in text, language, or operation should not share
+     * requests, and every call sharing a failed request should get its error.
+     */
+    @Test
+    public void testDifferentCalls() throws InterruptedException {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost", transport);
+        CountDownLatch failed = new CountDownLatch(4);
+        translator.translate(new Text("hello"), Language.ES, null, e -> failed.countDown());
+        translator.translate(new Text("hello"), Language.ES, null, e -> failed.countDown());
+        translator.translate(new Text("hello", Language.EN), Language.ES, null,
+                e -> failed.countDown());
+        translator.translate(new Text("hello"), Language.FR, null, e -> failed.countDown());
+        translator.identify("hello", null, e -> { });
+        Assert.assertEquals(4, requests.get());
+
+        response.complete(new Transport.Response(400, new byte[0], Collections.emptyMap()));
+        Assert.assertTrue(failed.await(timeout, TimeUnit.SECONDS));
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * Calls that share a request should each get their own copy of the
+     * result, so that changing one does not change the others.
+     */
+    @Test
+    public void testSharedResultCopies() throws Exception {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost", transport);
+        CompletableFuture<Text[]> first = translator.translateAsync(new Text("hello"), Language.ES);
+        CompletableFuture<Text[]> second = translator.translateAsync(new Text("hello"), Language.ES);
+        Assert.assertEquals(1, requests.get());
+
+        response.complete(new Transport.Response(200,
+                translation.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+        Text[] firstResult = first.get(timeout, TimeUnit.SECONDS);
+        Text[] secondResult = second.get(timeout, TimeUnit.SECONDS);
+        Assert.assertNotSame(firstResult, secondResult);
+        firstResult[0] = new Text("changed");
+        Assert.assertEquals("hola", secondResult[0].toString());
+        translator.shutdown(timeout);
+    }
+
+    /**
+     * Every call should send its own request when coalescing is turned off.
+     */
+    @Test
+    public void testDisabled() throws InterruptedException {
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost", transport);
+        translator.setRequestCoalescing(false);
+        translator.identify("hello", result -> { });
+        translator.identify("hello", result -> { });
+        Assert.assertEquals(2, requests.get());
+
+        response.complete(new Transport.Response(400, new byte[0], Collections.emptyMap()));
+        translator.shutdown(timeout);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for RetryPolicy and its use by Translator. */
+public class RetryPolicyTest {
+    private final String translation =
+            "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}";
+
+    /**
+     * Returns a Transport that fails with 'code' for the first 'failures'
+     * requests and then sends a translation.
+     */
+    private Transport failing(int failures, int code, AtomicInteger requests) {
+        return (url, params) -> {
+            int status = requests.incrementAndGet() <= failures ? code : 200;
+            return CompletableFuture.completedFuture(new Transport.Response(status,
+                    translation.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+        };
+    }
+
+    /**
+     * Transient failures should be retried until a request succeeds.
+     */
+    @Test
+    public void testRetry() {
+        AtomicInteger requests = new AtomicInteger();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                failing(2, 503, requests));
+        translator.setRetryPolicy(new RetryPolicy(3, 1, 10, 0, 10));
+
+        Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+        Assert.assertEquals("hola", result[0].toString());
+        Assert.assertEquals(3, requests.get());
+    }
+
+    /**
+     * Failures that are not transient should not be retried.
+     */
+    @Test
+    public void testNotRetryable() {
+        AtomicInteger requests = new AtomicInteger();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                failing(1, 400, requests));
+        translator.setRetryPolicy(new RetryPolicy(3, 1, 10, 0, 10));
+
+        try {
+            translator.translateImpl(new Text("hello"), Language.ES).join();
+            Assert.fail("The request should fail");
+        } catch (CompletionException e) {
+            Assert.assertEquals(400, ((TranslationError) e.getCause()).getCode());
+        }
+        Assert.assertEquals(1, requests.get());
+    }
+
+    /**
+     * Retries should stop once the budget is spent.
+     */
+    @Test
+    public void testBudget() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 10, 0.5, 1);
+
+        Assert.assertTrue(policy.nextDelay(1, 503, -1) >= 0);
+        Assert.assertEquals(-1, policy.nextDelay(1, 503, -1));
+
+        policy.recordRequest();
+        policy.recordRequest();
+        Assert.assertTrue(policy.nextDelay(1, 503, -1) >= 0);
+    }
+
+    /**
+     * The delay should be at least what the service asked for, and requests
+     * the service asks to delay for too long should not be retried.
+     */
+    @Test
+    public void testRetryAfter() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 5000, 0, 10);
+
+        Assert.assertEquals(2000, policy.nextDelay(1, 429,
+                RetryPolicy.parseRetryAfter("2")));
+        Assert.assertEquals(-1, policy.nextDelay(1, 429,
+                RetryPolicy.parseRetryAfter("60")));
+        Assert.assertEquals(-1, RetryPolicy.parseRetryAfter("soon"));
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for RoutingTranslator. */
+public class RoutingTranslatorTest {
+    /**
+     * Returns a GoogleTranslator whose service answers with 'status' and
+     * translates every text to 'translation'.
+     */
+    private Translator provider(int status, String translation, AtomicInteger requests) {
+        String body = "{\"data\":{\"translations\":[{\"translatedText\":\"" +
+                translation + "\"}]}}";
+        String languages = "{\"data\":{\"languages\":[{\"language\":\"en\"}," +
+                "{\"language\":\"es\"}]}}";
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    if (url.endsWith("/languages")) {
+                        return CompletableFuture.completedFuture(new Transport.Response(200,
+                                languages.getBytes(StandardCharsets.UTF_8),
+                                Collections.emptyMap()));
+                    }
+                    requests.incrementAndGet();
+                    return CompletableFuture.completedFuture(new Transport.Response(status,
+                            body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+                });
+        translator.setRetryPolicy(null);
+        return translator;
+    }
+
+    /**
+     * A request that fails should be sent to the next Translator, and the
+     * failing Translator should not be tried first afterwards.
+     */
+    @Test
+    public void testFailover() {
+        AtomicInteger failing = new AtomicInteger();
+        AtomicInteger working = new AtomicInteger();
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                provider(503, "", failing), provider(200, "hola", working)));
+
+        for (int i = 0; i < 3; i++) {
+            Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+            Assert.assertEquals("hola", result[0].toString());
+        }
+        Assert.assertEquals(1, failing.get());
+        Assert.assertEquals(3, working.get());
+    }
+
+    /**
+     * A request that is still running after the failover delay should also be
+     * sent to the next Translator.
+     */
+    @Test
+    public void testSlowProvider() {
+        Translator stalled = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> new CompletableFuture<>());
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                stalled, provider(200, "hola", new AtomicInteger())));
+        translator.setFailoverDelay(10);
+
+        Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+        Assert.assertEquals("hola", result[0].toString());
+    }
+
+    /**
+     * The request that loses to the other Translator's should be aborted.
+     */
+    @Test
+    public void testSlowProvider_abortsLoser() throws InterruptedException {
+        CompletableFuture<Transport.Response> stalledRequest = new CompletableFuture<>();
+        Translator stalled = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> url.endsWith("/languages") ? new CompletableFuture<>() :
+                        stalledRequest);
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                stalled, provider(200, "hola", new AtomicInteger())));
+        translator.setFailoverDelay(10);
+
+        Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+        Assert.assertEquals("hola", result[0].toString());
+        for (int i = 0; i < 1000 && !stalledRequest.isCancelled(); i++) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(stalledRequest.isCancelled());
+    }
+
+    /**
+     * A Translator that has only failed should not be expected to be faster
+     * than one that has succeeded.
+     */
+    @Test
+    public void testUnmeasuredProvider() {
+        AtomicInteger failing = new AtomicInteger();
+        AtomicInteger working = new AtomicInteger();
+        Translator slow = provider(200, "hola", working);
+        Translator delayed = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> slow.getTransport().post(url, params).thenApplyAsync(
+                        response -> response,
+                        CompletableFuture.delayedExecutor(250, TimeUnit.MILLISECONDS)));
+        delayed.setRetryPolicy(null);
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                provider(503, "", failing), delayed));
+
+        for (int i = 0; i < 2; i++) {
+            Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+            Assert.assertEquals("hola", result[0].toString());
+        }
+        Assert.assertEquals(1, failing.get());
+        Assert.assertEquals(2, working.get());
+    }
+
+    /**
+     * Constructing a RoutingTranslator should not send requests. Once the
+     * first routed call has loaded the directions, a Translator that does not
+     * support a direction should be skipped.
+     */
+    @Test
+    public void testUnsupportedProvider() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        AtomicInteger french = new AtomicInteger();
+        String body = "{\"data\":{\"translations\":[{\"translatedText\":\"bonjour\"}]}}";
+        String languages = "{\"data\":{\"languages\":[{\"language\":\"en\"}," +
+                "{\"language\":\"fr\"}]}}";
+        Translator frenchOnly = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    boolean isListing = url.endsWith("/languages");
+                    (isListing ? listings : french).incrementAndGet();
+                    return CompletableFuture.completedFuture(new Transport.Response(200,
+                            (isListing ? languages : body).getBytes(StandardCharsets.UTF_8),
+                            Collections.emptyMap()));
+                });
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                frenchOnly, provider(200, "hola", new AtomicInteger())));
+        Assert.assertEquals(0, listings.get());
+
+        translator.translateImpl(new Text("hello"), Language.ES).join();
+        frenchOnly.getSupport().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(1, listings.get());
+
+        french.set(0);
+        Text[] result = translator.translateImpl(new Text("hello"), Language.ES).join();
+        Assert.assertEquals("hola", result[0].toString());
+        Assert.assertEquals(0, french.get());
+    }
+
+    /**
+     * If every Translator fails, the last error should be returned.
+     */
+    @Test
+    public void testAllFail() {
+        RoutingTranslator translator = new RoutingTranslator(Arrays.asList(
+                provider(503, "", new AtomicInteger()),
+                provider(400, "", new AtomicInteger())));
+
+        try {
+            translator.translateImpl(new Text("hello"), Language.ES).join();
+            Assert.fail("The request should fail");
+        } catch (Exception e) {
+            Assert.assertEquals(400, ((TranslationError) e.getCause()).getCode());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/** Tests for TranslationMemory. */
+public class TranslationMemoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * TranslationMemory.get should return what was stored for the same
+     * service, direction, and text, and nothing for any other request.
+     */
+    @Test
+    public void testGet() throws IOException {
+        try (TranslationMemory memory = new TranslationMemory(folder.getRoot().toPath(), 16)) {
+            memory.put(Key.GOOGLE, new Text("dog", Language.EN), Language.NL,
+                    new Text[]{new Text("hond", Language.NL)});
+
+            Text[] translations = memory.get(Key.GOOGLE, new Text("dog", Language.EN), Language.NL);
+            Assert.assertNotNull(translations);
+            Assert.assertEquals("hond", translations[0].toString());
+            Assert.assertEquals(Language.NL, translations[0].getLanguage());
+
+            Assert.assertNull(memory.get(Key.YANDEX, new Text("dog", Language.EN), Language.NL));
+            Assert.assertNull(memory.get(Key.GOOGLE, new Text("dog"), Language.NL));
+            Assert.assertNull(memory.get(Key.GOOGLE, new Text("dog", Language.EN), Language.DE));
+        }
+    }
+
+    /**
+     * Translations should still be available after the memory is closed and
+     * opened again, and new translations should not overwrite old ones.
+     */
+    @Test
+    public void testReopen() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TranslationMemory memory = new TranslationMemory(directory, 16)) {
+            for (int i = 0; i < 10; i++) {
+                memory.put(Key.YANDEX, new Text("text " + i), Language.RU,
+                        new Text[]{new Text("translation " + i)});
+            }
+        }
+
+        try (TranslationMemory memory = new TranslationMemory(directory, 16)) {
+            memory.put(Key.YANDEX, new Text("text 10"), Language.RU,
+                    new Text[]{new Text("translation 10")});
+
+            for (int i = 0; i <= 10; i++) {
+                Text[] translations = memory.get(Key.YANDEX, new Text("text " + i), Language.RU);
+                Assert.assertNotNull(translations);
+                Assert.assertEquals("translation " + i, translations[0].toString());
+            }
+        }
+    }
+
+    /**
+     * Storing a text a second time should replace its translations.
+     */
+    @Test
+    public void testPut_replace() throws IOException {
+        try (TranslationMemory memory = new TranslationMemory(folder.getRoot().toPath(), 16)) {
+            memory.put(Key.GOOGLE, new Text("dog"), Language.NL,
+                    new Text[]{new Text("old")});
+            memory.put(Key.GOOGLE, new Text("dog"), Language.NL,
+                    new Text[]{new Text("hond"), new Text("reu")});
+
+            Text[] translations = memory.get(Key.GOOGLE, new Text("dog"), Language.NL);
+            Assert.assertEquals(2, translations.length);
+            Assert.assertEquals("hond", translations[0].toString());
+            Assert.assertEquals("reu", translations[1].toString());
+        }
+    }
+
+    /**
+     * A PersistentTranslator should still return translations that cannot be
+     * written to its memory, and count the failures.
+     */
+    @Test
+    public void testPersistent_writeError() throws IOException {
+        Translator service = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(
+                        new Transport.Response(200, ("{\"data\":{\"translations\":" +
+                                "[{\"translatedText\":\"hond\"}]}}")
+                                .getBytes(StandardCharsets.UTF_8), Collections.emptyMap())));
+        try (TranslationMemory memory = new TranslationMemory(folder.getRoot().toPath(), 16) {
+            @Override
+            public void put(Key service, Text from, Language to, Text[] translations)
+                    throws IOException {
+                throw new IOException("disk full");
+            }
+        }) {
+            PersistentTranslator translator = new PersistentTranslator(service, memory);
+            Text[] translations = translator.translateImpl(
+                    new Text("dog", Language.EN), Language.NL).join();
+            Assert.assertEquals("hond", translations[0].toString());
+            Assert.assertEquals(1, translator.getWriteErrorCount());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.mlposey;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Tests for the Flow API of Translator. */
+public class TranslationPublisherTest {
+    private final int timeout = 10;
+    private FakeTranslationServer server;
+    private Translator translator;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTranslationServer(1);
+        server.setLatency(FakeTranslationServer.uniform(0, 30));
+        translator = Translators.get(Key.GOOGLE, server.getGoogleHost());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        translator.shutdown(timeout);
+        server.close();
+    }
+
+    /**
+     * Translations should be published in the order of their texts, and no
+     * more than the window of texts should be outstanding at once.
+     */
+    @Test
+    public void testOrderAndWindow() throws InterruptedException {
+        Collector<Text[]> collector = new Collector<>(Long.MAX_VALUE);
+        CountingPublisher texts = new CountingPublisher(100, collector.items);
+        translator.translate(texts, Language.ES, 8).subscribe(collector);
+
+        Assert.assertTrue(collector.done.await(timeout, TimeUnit.SECONDS));
+        Assert.assertNull(collector.error.get());
+        Assert.assertEquals(100, collector.items.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("[es] text " + i, collector.items.get(i)[0].toString());
+        }
+        Assert.assertTrue(texts.maxOutstanding <= 8);
+    }
+
+    /** Texts should only be requested when the subscriber asks for results. */
+    @Test
+    public void testDemand() throws InterruptedException {
+        Collector<Text[]> collector = new Collector<>(3);
+        CountingPublisher texts = new CountingPublisher(100, collector.items);
+        translator.translate(texts, Language.ES, 8).subscribe(collector);
+
+        collector.awaitItems(3);
+        Thread.sleep(100);
+        Assert.assertEquals(3, collector.items.size());
+        Assert.assertEquals(3, texts.requested.get());
+
+        collector.subscription.request(2);
+        collector.awaitItems(5);
+        Thread.sleep(100);
+        Assert.assertEquals(5, texts.requested.get());
+        Assert.assertEquals("[es] text 4", collector.items.get(4)[0].toString());
+        collector.subscription.cancel();
+        Assert.assertTrue(texts.isCancelled);
+    }
+
+    /** A failed operation should end the stream and cancel the source. */
+    @Test
+    public void testError() throws InterruptedException {
+        server.failNext(1, 400);
+        Collector<Language[]> collector = new Collector<>(Long.MAX_VALUE);
+        CountingPublisher texts = new CountingPublisher(100, collector.items);
+        translator.identify(new Flow.Publisher<String>() {
+            @Override
+            public void subscribe(Flow.Subscriber<? super String> subscriber) {
+                texts.subscribe(new Flow.Subscriber<Text>() {
+                    public void onSubscribe(Flow.Subscription s) { subscriber.onSubscribe(s); }
+                    public void onNext(Text item) { subscriber.onNext(item.toString()); }
+                    public void onError(Throwable t) { subscriber.onError(t); }
+                    public void onComplete() { subscriber.onComplete(); }
+                });
+            }
+        }, 4).subscribe(collector);
+
+        Assert.assertTrue(collector.done.await(timeout, TimeUnit.SECONDS));
+        Assert.assertEquals(400, ((TranslationError) collector.error.get()).getCode());
+        Assert.assertTrue(collector.items.size() < 100);
+        Assert.assertTrue(texts.isCancelled);
+    }
+
+    /** Cancelling the subscription should abort the translations in flight. */
+    @Test
+    public void testCancelAbortsInFlight() throws InterruptedException {
+        List<CompletableFuture<Transport.Response>> requests = new CopyOnWriteArrayList<>();
+        Translator stalled = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> {
+                    CompletableFuture<Transport.Response> request = new CompletableFuture<>();
+                    if (!url.endsWith("/languages")) { requests.add(request); }
+                    return request;
+                });
+        Collector<Text[]> collector = new Collector<>(Long.MAX_VALUE);
+        stalled.translate(new CountingPublisher(100, collector.items), Language.ES, 4)
+                .subscribe(collector);
+        awaitSize(requests, 4);
+        Assert.assertEquals(4, requests.size());
+
+        collector.subscription.cancel();
+        for (CompletableFuture<Transport.Response> request : requests) {
+            Assert.assertTrue(request.isCancelled());
+        }
+        stalled.shutdown(0);
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    /** Publishes "text 0", "text 1", ... and counts what was requested. */
+    private static class CountingPublisher implements Flow.Publisher<Text> {
+        final int count;
+        // The items the subscriber has received
+        final List<?> delivered;
+        final AtomicInteger requested = new AtomicInteger();
+        // The most texts that were requested but not delivered
+        volatile int maxOutstanding;
+        volatile boolean isCancelled;
+
+        CountingPublisher(int count, List<?> delivered) {
+            this.count = count;
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Text> subscriber) {
+            AtomicInteger sent = new AtomicInteger();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    int total = requested.addAndGet((int) n);
+                    maxOutstanding = Math.max(maxOutstanding, total - delivered.size());
+                    for (long i = 0; i < n && sent.get() < count && !isCancelled; i++) {
+                        subscriber.onNext(new Text("text " + sent.getAndIncrement()));
+                    }
+                    if (sent.get() == count) { subscriber.onComplete(); }
+                }
+
+                @Override
+                public void cancel() { isCancelled = true; }
+            });
+        }
+    }
+
+    /** Collects the items of a stream, asking for 'initialDemand' of them. */
+    private static class Collector<T> implements Flow.Subscriber<T> {
+        final long initialDemand;
+        final List<T> items = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+
+        Collector(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(T item) { items.add(item); }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() { done.countDown(); }
+
+        void awaitItems(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (items.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+    }
+}
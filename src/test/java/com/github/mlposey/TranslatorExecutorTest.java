@@ -0,0 +1,65 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for TranslatorExecutor. */
+public class TranslatorExecutorTest {
+    protected final int timeout = 10;
+
+    /**
+     * A bounded executor should run at most its number of threads, queue at
+     * most its queue size, and count the tasks it turns away.
+     */
+    @Test
+    public void testBounded() throws InterruptedException {
+        TranslatorExecutor executor = TranslatorExecutor.bounded(1, 1,
+                new ThreadPoolExecutor.AbortPolicy());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try { release.await(); } catch (InterruptedException e) { }
+        });
+        started.await();
+        executor.execute(() -> {});
+
+        try {
+            executor.execute(() -> {});
+            Assert.fail("The third task should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(1, executor.getActiveCount());
+        Assert.assertEquals(1, executor.getQueuedCount());
+        Assert.assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(timeout, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+
+    /**
+     * A Translator should not shut down an executor it was given.
+     */
+    @Test
+    public void testSharedExecutor() throws InterruptedException {
+        TranslatorExecutor executor = TranslatorExecutor.bounded(2, 10,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                HttpClientTransport.getDefault(), executor);
+        translator.shutdown(timeout);
+
+        Assert.assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+}
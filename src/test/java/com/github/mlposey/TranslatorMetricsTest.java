@@ -0,0 +1,123 @@
+package com.github.mlposey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for LatencyHistogram and TranslatorMetrics. */
+public class TranslatorMetricsTest {
+    private static final String translation =
+            "{\"data\":{\"translations\":[{\"translatedText\":\"hola\"}]}}";
+
+    /**
+     * Percentiles should be within the precision of the histogram's buckets.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(99));
+
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        assertNear(TimeUnit.MICROSECONDS.toNanos(500), histogram.getPercentile(50));
+        assertNear(TimeUnit.MICROSECONDS.toNanos(990), histogram.getPercentile(99));
+        assertNear(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getPercentile(100));
+
+        // Durations of any size should be accepted.
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        Assert.assertEquals(1002, histogram.getCount());
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+
+    /**
+     * Calls should be counted with their phases, characters, and errors, and
+     * listeners should see each of them.
+     */
+    @Test
+    public void testTranslator() {
+        AtomicInteger requests = new AtomicInteger();
+        Translator translator = new GoogleTranslator(Key.GOOGLE, "http://localhost",
+                (url, params) -> CompletableFuture.completedFuture(
+                        requests.incrementAndGet() == 1 ?
+                                new Transport.Response(200,
+                                        translation.getBytes(StandardCharsets.UTF_8),
+                                        Collections.emptyMap()) :
+                                new Transport.Response(400, new byte[0],
+                                        Collections.emptyMap())));
+        translator.setRateLimiter(new RateLimiter(100, Double.POSITIVE_INFINITY));
+
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger parses = new AtomicInteger();
+        translator.getMetrics().addListener(new MetricsListener() {
+            @Override
+            public void onCall(Operation operation, long nanos, Throwable error) {
+                calls.incrementAndGet();
+            }
+
+            @Override
+            public void onParse(Operation operation, long nanos) {
+                parses.incrementAndGet();
+            }
+        });
+
+        translator.guarded(Operation.TRANSLATE, () ->
+                translator.translateImpl(new Text("hello"), Language.ES)).join();
+        try {
+            translator.guarded(Operation.TRANSLATE, () ->
+                    translator.translateImpl(new Text("hello"), Language.ES)).join();
+            Assert.fail("the second call should fail");
+        } catch (CompletionException e) {
+            Assert.assertEquals(400, ((TranslationError) e.getCause()).getCode());
+        }
+
+        OperationMetrics metrics = translator.getMetrics().get(Operation.TRANSLATE);
+        Assert.assertEquals(2, metrics.getCallCount());
+        Assert.assertEquals(1, metrics.getErrorCount());
+        Assert.assertEquals(1, metrics.getErrorCount(400));
+        Assert.assertEquals(0, metrics.getInFlight());
+        Assert.assertEquals(0, metrics.getQueued());
+        Assert.assertEquals(2, metrics.getLatency().getCount());
+        Assert.assertEquals(2, metrics.getQueueTime().getCount());
+        Assert.assertEquals(2, metrics.getNetworkTime().getCount());
+        Assert.assertEquals(1, metrics.getParseTime().getCount());
+        Assert.assertEquals("hello".length() * 2 + "es".length() * 2, metrics.getCharsSent());
+
+        Assert.assertEquals(0, translator.getMetrics().get(Operation.IDENTIFY).getCallCount());
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(1, parses.get());
+    }
+
+    /**
+     * Registered MBeans should be visible to JMX until they are unregistered.
+     */
+    @Test
+    public void testMBeans() throws Exception {
+        Translator translator = Translators.get(Key.GOOGLE, "http://localhost");
+        translator.getMetrics().registerMBeans("metrics-test");
+
+        ObjectName name = new ObjectName(
+                "com.github.mlposey:type=Translator,name=\"metrics-test\",operation=translate");
+        Assert.assertEquals(0L, ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "CallCount"));
+
+        translator.shutdown(1);
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertEquals(expected, actual, expected * 0.07);
+    }
+}
@@ -3,7 +3,11 @@ package com.github.mlposey;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -17,6 +21,9 @@ import java.util.UUID;
  * subclasses uphold the expected functionality of abstract components. The quality
  * of translations is subject to the algorithms a service uses, not to client-side
  * logic.
+ *
+ * Subclasses can override {@link TranslatorTest#newTranslator()} to run the tests
+ * against a {@link FakeTranslationServer} instead of the real service.
  */
 public class TranslatorTest {
     protected final int timeout = 10;
@@ -25,11 +32,35 @@ public class TranslatorTest {
     protected Language[] langs;
     protected boolean hasSupport;
     protected Text[] translations;
+    protected Text[][] batchTranslations;
+    protected Language[][] batchLangs;
 
     protected int code;
 
     public TranslatorTest(Key key) { this.key = key; }
 
+    /**
+     * Returns the Translator under test. By default, it uses the real service.
+     */
+    protected Translator newTranslator() { return Translators.get(key); }
+
+    /**
+     * Starts a FakeTranslationServer that gives the answers these tests expect.
+     */
+    protected static FakeTranslationServer startFakeServer() throws IOException {
+        Map<String, String> dutch = new HashMap<>();
+        dutch.put("dog", "hond");
+        dutch.put("cat", "kat");
+
+        FakeTranslationServer server = new FakeTranslationServer();
+        server.setTranslation((text, from, to) ->
+                to.equals("nl") ? dutch.getOrDefault(text, text) : text);
+        server.setDetector(text -> {
+            if (text.startsWith("der ")) { return "de"; }
+            return text.chars().anyMatch(Character::isLetter) ? "en" : null;
+        });
+        return server;
+    }
 
     /**
      * Translator.identify should recognize 'test' as being from the
@@ -40,7 +71,7 @@ public class TranslatorTest {
     public void testIdentify() throws InterruptedException {
         langs = null;
 
-        Translator translator = Translators.get(key);
+        Translator translator = newTranslator();
         translator.identify("test", l -> langs = l);
         translator.shutdown(timeout);
 
@@ -49,19 +80,21 @@ public class TranslatorTest {
     }
 
     /**
-     * Translator.identify should produce an exception when supplied text
-     * text that does not belong to any language.
+     * Translator.identify should produce Language.UND rather than an error
+     * when supplied text that does not belong to any language.
      */
     @Test
-    public void testIdentify_handleError() throws InterruptedException {
+    public void testIdentify_undetermined() throws InterruptedException {
         code = 0;
+        langs = null;
 
-        Translator translator = Translators.get(key);
+        Translator translator = newTranslator();
         translator.identify(";)", l -> langs = l,
                 err -> code = err.getCode());
         translator.shutdown(timeout);
 
-        Assert.assertNotEquals(0, code);
+        Assert.assertEquals(0, code);
+        Assert.assertArrayEquals(new Language[]{Language.UND}, langs);
     }
 
     /**
@@ -74,7 +107,7 @@ public class TranslatorTest {
     public void testHasSupport() throws InterruptedException {
         hasSupport = false;
 
-        Translator translator = Translators.get(key);
+        Translator translator = newTranslator();
         translator.hasSupport(Language.EN, Language.RU, b -> hasSupport = b);
         translator.shutdown(timeout);
 
@@ -92,7 +125,7 @@ public class TranslatorTest {
     public void testTranslate() throws InterruptedException{
         translations = null;
 
-        Translator translator = Translators.get(key);
+        Translator translator = newTranslator();
         translator.translate(new Text("dog", Language.EN), Language.NL,
                 texts -> translations = texts);
         translator.shutdown(timeout);
@@ -112,7 +145,7 @@ public class TranslatorTest {
     public void testTranslate_handleError() throws InterruptedException {
         code = 0;
 
-        Translator translator = Translators.get(key);
+        Translator translator = newTranslator();
         translator.translate(new Text(UUID.randomUUID().toString(), Language.EN),
                 Language.TEST, texts -> translations = texts,
                 err -> code = err.getCode());
@@ -120,4 +153,44 @@ public class TranslatorTest {
 
         Assert.assertNotEquals(0, code);
     }
+
+    /**
+     * Translator.translateBatch should produce one result per text and keep
+     * the results in the same order as the texts.
+     */
+    @Test
+    public void testTranslateBatch() throws InterruptedException {
+        batchTranslations = null;
+
+        Translator translator = newTranslator();
+        translator.translateBatch(Arrays.asList(
+                new Text("dog", Language.EN),
+                new Text("cat", Language.EN)
+        ), Language.NL, texts -> batchTranslations = texts);
+        translator.shutdown(timeout);
+
+        Assert.assertNotNull(batchTranslations);
+        Assert.assertEquals(2, batchTranslations.length);
+        Assert.assertTrue(batchTranslations[0][0].toString().equalsIgnoreCase("hond"));
+        Assert.assertTrue(batchTranslations[1][0].toString().equalsIgnoreCase("kat"));
+    }
+
+    /**
+     * Translator.identifyBatch should produce one result per string and keep
+     * the results in the same order as the strings.
+     */
+    @Test
+    public void testIdentifyBatch() throws InterruptedException {
+        batchLangs = null;
+
+        List<String> texts = Arrays.asList("the dog is sleeping", "der Hund und die Katze");
+        Translator translator = newTranslator();
+        translator.identifyBatch(texts, l -> batchLangs = l);
+        translator.shutdown(timeout);
+
+        Assert.assertNotNull(batchLangs);
+        Assert.assertEquals(2, batchLangs.length);
+        Assert.assertEquals(Language.EN, batchLangs[0][0]);
+        Assert.assertEquals(Language.DE, batchLangs[1][0]);
+    }
 }